@@ -0,0 +1,97 @@
+package com.updmtProjects.webfluxsecurity.benchmark;
+
+import com.updmtProjects.webfluxsecurity.security.BearerTokenServerAuthenticationConverter;
+import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
+import com.updmtProjects.webfluxsecurity.security.JwtHandler;
+import com.updmtProjects.webfluxsecurity.security.SecurityService;
+import com.updmtProjects.webfluxsecurity.security.UserAuthenticationBearer;
+import com.updmtProjects.webfluxsecurity.security.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-request cost of turning a bearer header into an Authentication with a warm token cache.
+ * {@code previousPath} replays the former operator chain (four Monos, substring, a fresh authority list),
+ * {@code fastPath} is the current converter. Run with {@code -prof gc} and compare gc.alloc.rate.norm.
+ * {@code createAuthentication} isolates UserAuthenticationBearer.create from header handling and verification.
+ */
+@State(Scope.Benchmark)
+public class BearerAuthenticationBenchmark {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private JwtHandler jwtHandler;
+    private JwtHandler.VerificationResult verificationResult;
+    private BearerTokenServerAuthenticationConverter converter;
+    private ServerWebExchange exchange;
+
+    @Setup
+    public void setup() {
+        StubJwtKeyManager jwtKeyManager = new StubJwtKeyManager();
+        jwtHandler = new JwtHandler(null, new VerifiedTokenCache(1000, new SimpleMeterRegistry()), jwtKeyManager);
+        converter = new BearerTokenServerAuthenticationConverter(jwtHandler);
+
+        String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, StubJwtKeyManager.KID)
+                .setClaims(Map.of("role", "USER", "username", "benchmark", SecurityService.TOKEN_VERSION_CLAIM, 0))
+                .setSubject("1")
+                .setId("benchmarkJti")
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000L))
+                .signWith(SignatureAlgorithm.ES256, jwtKeyManager.signingKey().block().getPrivateKey())
+                .compact();
+        exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/users")
+                .header(HttpHeaders.AUTHORIZATION, BEARER_PREFIX + token));
+        // warm the verified token cache, both paths measure the cache hit
+        converter.convert(exchange).block();
+        verificationResult = jwtHandler.verify(token);
+    }
+
+    @Benchmark
+    public Authentication previousPath() {
+        return Mono.justOrEmpty(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .flatMap(authValue -> Mono.justOrEmpty(authValue.substring(BEARER_PREFIX.length())))
+                .flatMap(jwtHandler::check)
+                .flatMap(BearerAuthenticationBenchmark::previousCreate)
+                .block();
+    }
+
+    @Benchmark
+    public Authentication fastPath() {
+        return converter.convert(exchange).block();
+    }
+
+    @Benchmark
+    public Authentication createAuthentication() {
+        return UserAuthenticationBearer.create(verificationResult).block();
+    }
+
+    private static Mono<Authentication> previousCreate(JwtHandler.VerificationResult verificationResult) {
+        Claims claims = verificationResult.claims;
+        String role = claims.get("role", String.class);
+        Integer tokenVersion = claims.get(SecurityService.TOKEN_VERSION_CLAIM, Integer.class);
+        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(role));
+        CustomPrincipal principal = new CustomPrincipal(Long.parseLong(claims.getSubject()),
+                claims.get("username", String.class), role, tokenVersion == null ? 0 : tokenVersion,
+                claims.getId(), claims.getExpiration());
+        return Mono.justOrEmpty(new UsernamePasswordAuthenticationToken(principal, null, authorities));
+    }
+}
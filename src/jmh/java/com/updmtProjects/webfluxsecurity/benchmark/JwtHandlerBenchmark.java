@@ -0,0 +1,73 @@
+package com.updmtProjects.webfluxsecurity.benchmark;
+
+import com.updmtProjects.webfluxsecurity.security.JwtHandler;
+import com.updmtProjects.webfluxsecurity.security.SecurityService;
+import com.updmtProjects.webfluxsecurity.security.VerifiedTokenCache;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.PrivateKey;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * JwtHandler.check with a warm verified token cache and with tokens that always miss it,
+ * i.e. full ES256 signature verification and claims parsing.
+ */
+@State(Scope.Thread)
+public class JwtHandlerBenchmark {
+
+    private static final int MISS_TOKENS = 1024;
+    private static final int MISS_CACHE_SIZE = 16;
+
+    private JwtHandler cachingJwtHandler;
+    private JwtHandler missingJwtHandler;
+    private String cachedToken;
+    private String[] missTokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        StubJwtKeyManager jwtKeyManager = new StubJwtKeyManager();
+        PrivateKey privateKey = jwtKeyManager.signingKey().block().getPrivateKey();
+        cachingJwtHandler = new JwtHandler(null, new VerifiedTokenCache(1000, new SimpleMeterRegistry()), jwtKeyManager);
+        // far more distinct tokens than cache entries, so nearly every check verifies the signature
+        missingJwtHandler = new JwtHandler(null, new VerifiedTokenCache(MISS_CACHE_SIZE, new SimpleMeterRegistry()), jwtKeyManager);
+
+        cachedToken = createToken(privateKey, "cachedJti");
+        cachingJwtHandler.check(cachedToken).block();
+        missTokens = new String[MISS_TOKENS];
+        for (int i = 0; i < MISS_TOKENS; i++) {
+            missTokens[i] = createToken(privateKey, "missJti" + i);
+        }
+    }
+
+    @Benchmark
+    public JwtHandler.VerificationResult checkCacheHit() {
+        return cachingJwtHandler.check(cachedToken).block();
+    }
+
+    @Benchmark
+    public JwtHandler.VerificationResult checkCacheMiss() {
+        String token = missTokens[next];
+        next = (next + 1) % MISS_TOKENS;
+        return missingJwtHandler.check(token).block();
+    }
+
+    private static String createToken(PrivateKey privateKey, String jti) {
+        return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, StubJwtKeyManager.KID)
+                .setClaims(Map.of("role", "USER", "username", "benchmark", SecurityService.TOKEN_VERSION_CLAIM, 0))
+                .setSubject("1")
+                .setId(jti)
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000L))
+                .signWith(SignatureAlgorithm.ES256, privateKey)
+                .compact();
+    }
+}
@@ -0,0 +1,62 @@
+package com.updmtProjects.webfluxsecurity.benchmark;
+
+import com.updmtProjects.webfluxsecurity.security.PBFDK2Encoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * PBFDK2Encoder on the calling thread and through the bounded hashing scheduler.
+ */
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "benchmarkPassword";
+
+    @Param({"10000", "210000"})
+    public int iterations;
+
+    private PBFDK2Encoder encoder;
+    private String encodedPassword;
+
+    @Setup
+    public void setup() {
+        encoder = new PBFDK2Encoder();
+        ReflectionTestUtils.setField(encoder, "secret", "benchmarkSecret");
+        ReflectionTestUtils.setField(encoder, "iteration", 64);
+        ReflectionTestUtils.setField(encoder, "keyLength", 256);
+        ReflectionTestUtils.setField(encoder, "saltLength", 16);
+        // no calibration, new hashes use exactly the benchmarked iteration count
+        ReflectionTestUtils.setField(encoder, "calibrationEnabled", false);
+        ReflectionTestUtils.setField(encoder, "minIterations", iterations);
+        ReflectionTestUtils.setField(encoder, "maxIterations", iterations);
+        ReflectionTestUtils.setField(encoder, "poolSize", 0);
+        ReflectionTestUtils.setField(encoder, "queueCapacity", 256);
+        encoder.init();
+        encodedPassword = encoder.encode(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.destroy();
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches(PASSWORD, encodedPassword);
+    }
+
+    @Benchmark
+    public Boolean matchesAsync() {
+        return encoder.matchesAsync(PASSWORD, encodedPassword).block();
+    }
+}
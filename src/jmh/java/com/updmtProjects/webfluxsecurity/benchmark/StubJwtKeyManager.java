@@ -0,0 +1,51 @@
+package com.updmtProjects.webfluxsecurity.benchmark;
+
+import com.updmtProjects.webfluxsecurity.security.JwtKeyManager;
+import com.updmtProjects.webfluxsecurity.security.SigningKey;
+import reactor.core.publisher.Mono;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+
+/**
+ * Key manager with a single in-memory ES256 key, so benchmarks run without the jwt_signing_keys table.
+ */
+public class StubJwtKeyManager extends JwtKeyManager {
+
+    public static final String KID = "benchmarkKid";
+    private static final String ENCRYPTION_KEY = "u8rzTA5KkKg0sYc2cIq1tMSMvrEG2Y29tiSPJfj3ABw=";
+
+    private final SigningKey signingKey;
+    private final PublicKey publicKey;
+
+    public StubJwtKeyManager() {
+        super(null, null, Duration.ofDays(7), Duration.ZERO, Duration.ofMinutes(1), 900, ENCRYPTION_KEY);
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyPair keyPair = generator.generateKeyPair();
+            this.signingKey = new SigningKey(KID, keyPair.getPrivate());
+            this.publicKey = keyPair.getPublic();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void startRefreshing() {
+    }
+
+    @Override
+    public Mono<SigningKey> signingKey() {
+        return Mono.just(signingKey);
+    }
+
+    @Override
+    public PublicKey verificationKey(String kid) {
+        return KID.equals(kid) ? publicKey : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.updmtProjects.webfluxsecurity.benchmark;
+
+import com.updmtProjects.webfluxsecurity.entity.RefreshToken;
+import com.updmtProjects.webfluxsecurity.entity.User;
+import com.updmtProjects.webfluxsecurity.entity.UserRole;
+import com.updmtProjects.webfluxsecurity.repository.RefreshTokenRepository;
+import com.updmtProjects.webfluxsecurity.security.RefreshTokenService;
+import com.updmtProjects.webfluxsecurity.security.ReactivePasswordEncoder;
+import com.updmtProjects.webfluxsecurity.security.SecurityService;
+import com.updmtProjects.webfluxsecurity.security.TokenDetails;
+import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * SecurityService.authenticate with user lookup, password check and refresh token storage stubbed out,
+ * so what is left is minting: claims, the ES256 signature and the refresh token.
+ */
+@State(Scope.Benchmark)
+public class TokenMintingBenchmark {
+
+    private SecurityService securityService;
+
+    @Setup
+    public void setup() {
+        User user = User.builder()
+                .id(1L)
+                .username("benchmark")
+                .password("encoded")
+                .role(UserRole.USER)
+                .enabled(true)
+                .build();
+        UserService userService = Stubs.of(UserService.class, Map.of(
+                "getUserByUsername", args -> Mono.just(user)));
+        ReactivePasswordEncoder passwordEncoder = Stubs.of(ReactivePasswordEncoder.class, Map.of(
+                "matchesAsync", args -> Mono.just(true),
+                "upgradeEncoding", args -> false));
+        RefreshTokenRepository refreshTokenRepository = Stubs.of(RefreshTokenRepository.class, Map.of(
+                "save", args -> Mono.just((RefreshToken) args[0])));
+
+        RefreshTokenService refreshTokenService = new RefreshTokenService(refreshTokenRepository);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshExpirationInSeconds", 2_592_000L);
+
+        securityService = new SecurityService(userService, passwordEncoder, new StubJwtKeyManager(),
+                refreshTokenService, null);
+        ReflectionTestUtils.setField(securityService, "expirationInSeconds", 900);
+        ReflectionTestUtils.setField(securityService, "issuer", "benchmark");
+    }
+
+    @Benchmark
+    public TokenDetails issueTokens() {
+        return securityService.authenticate("benchmark", "password").block();
+    }
+}
@@ -3,6 +3,8 @@ package com.updmtProjects.webfluxsecurity.config;
 import com.updmtProjects.webfluxsecurity.security.AuthenticationManager;
 import com.updmtProjects.webfluxsecurity.security.BearerTokenServerAuthenticationConverter;
 import com.updmtProjects.webfluxsecurity.security.JwtHandler;
+import com.updmtProjects.webfluxsecurity.security.JwtKeyManager;
+import com.updmtProjects.webfluxsecurity.security.VerifiedTokenCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,20 +26,25 @@ public class WebSecurityConfig {
 
     @Value("${jwt.secret}")
     private String secret;
+    @Value("${jwt.legacy-hs256-enabled}")
+    private boolean legacyHs256Enabled;
 
-    private final String[] publicRoutes = {"/api/v1/auth/login"};
+    private final String[] publicRoutes = {"/api/v1/auth/login", "/api/v1/auth/refresh", "/.well-known/jwks.json"};
 
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, AuthenticationManager authenticationManager) {
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, AuthenticationManager authenticationManager,
+                                                         VerifiedTokenCache verifiedTokenCache, JwtKeyManager jwtKeyManager) {
         return http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange(exchanges -> exchanges
                         .pathMatchers(HttpMethod.OPTIONS).permitAll()
                         .pathMatchers(publicRoutes).permitAll()
+                        .pathMatchers("/actuator/health").permitAll()
+                        .pathMatchers("/actuator/**").hasAuthority("ADMIN")
                         .pathMatchers(HttpMethod.POST, "/api/v1/users").hasAuthority("ADMIN")
-                        .pathMatchers("/api/v1/users/all", "/api/v1/users/{id}").hasAnyAuthority("ADMIN", "MODERATOR")
+                        .pathMatchers("/api/v1/users/all", "/api/v1/users/all/stream", "/api/v1/users/{id}").hasAnyAuthority("ADMIN", "MODERATOR")
                         .pathMatchers("/api/v1/users").authenticated()
-                        .pathMatchers("/api/v1/events/all").hasAnyAuthority("ADMIN", "MODERATOR")
+                        .pathMatchers("/api/v1/events/all", "/api/v1/events/all/stream").hasAnyAuthority("ADMIN", "MODERATOR")
                         .pathMatchers("/api/v1/events/{eventId}", "/api/v1/events/all/{userId}").authenticated()
                         .anyExchange().authenticated()
                 )
@@ -51,13 +58,15 @@ public class WebSecurityConfig {
                             return Mono.fromRunnable(() -> swe.getResponse().setStatusCode(HttpStatus.FORBIDDEN));
                         })
                 )
-                .addFilterAt(bearerAuthenticationFilter(authenticationManager), SecurityWebFiltersOrder.AUTHENTICATION)
+                .addFilterAt(bearerAuthenticationFilter(authenticationManager, verifiedTokenCache, jwtKeyManager), SecurityWebFiltersOrder.AUTHENTICATION)
                 .build();
     }
 
-    private AuthenticationWebFilter bearerAuthenticationFilter(AuthenticationManager authenticationManager) {
+    private AuthenticationWebFilter bearerAuthenticationFilter(AuthenticationManager authenticationManager,
+                                                               VerifiedTokenCache verifiedTokenCache, JwtKeyManager jwtKeyManager) {
         AuthenticationWebFilter bearerAuthenticationFilter = new AuthenticationWebFilter(authenticationManager);
-        bearerAuthenticationFilter.setServerAuthenticationConverter(new BearerTokenServerAuthenticationConverter(new JwtHandler(secret)));
+        JwtHandler jwtHandler = new JwtHandler(legacyHs256Enabled ? secret : null, verifiedTokenCache, jwtKeyManager);
+        bearerAuthenticationFilter.setServerAuthenticationConverter(new BearerTokenServerAuthenticationConverter(jwtHandler));
         bearerAuthenticationFilter.setRequiresAuthenticationMatcher(ServerWebExchangeMatchers.pathMatchers("/**"));
 
         return bearerAuthenticationFilter;
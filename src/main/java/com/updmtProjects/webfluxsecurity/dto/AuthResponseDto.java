@@ -20,5 +20,7 @@ public class AuthResponseDto {
     private String token;
     private Date issuedAt;
     private Date expiredAt;
+    private String refreshToken;
+    private Date refreshExpiredAt;
 
 }
@@ -0,0 +1,23 @@
+package com.updmtProjects.webfluxsecurity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadDto {
+
+    private Long fileId;
+    private String url;
+    private String method;
+    // headers the client has to send with the upload, they are part of the signature
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
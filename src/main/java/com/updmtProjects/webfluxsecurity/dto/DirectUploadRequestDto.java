@@ -0,0 +1,11 @@
+package com.updmtProjects.webfluxsecurity.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class DirectUploadRequestDto {
+
+    private String fileName;
+}
@@ -1,5 +1,6 @@
 package com.updmtProjects.webfluxsecurity.dto;
 
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,4 +15,5 @@ public class FileDto {
     private String storageLink;
     private LocalDateTime created;
     private boolean deleted;
+    private UploadStatus uploadStatus;
 }
@@ -0,0 +1,23 @@
+package com.updmtProjects.webfluxsecurity.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of one file of a batch upload: either the registered file or the error code.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FileUploadResultDto {
+
+    private String fileName;
+    private FileDto file;
+    private String errorCode;
+    private String errorMessage;
+}
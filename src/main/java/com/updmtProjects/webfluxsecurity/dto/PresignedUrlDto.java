@@ -0,0 +1,18 @@
+package com.updmtProjects.webfluxsecurity.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignedUrlDto {
+
+    private String url;
+    private Instant expiresAt;
+}
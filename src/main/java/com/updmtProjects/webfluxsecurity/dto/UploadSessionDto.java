@@ -0,0 +1,22 @@
+package com.updmtProjects.webfluxsecurity.dto;
+
+import com.updmtProjects.webfluxsecurity.entity.UploadSessionStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+public class UploadSessionDto {
+
+    private Long id;
+    private String fileName;
+    private long uploadLength;
+    private long uploadOffset;
+    // every chunk but the last must have exactly this size
+    private int chunkSize;
+    private UploadSessionStatus status;
+    private Long fileId;
+    private LocalDateTime expiresAt;
+}
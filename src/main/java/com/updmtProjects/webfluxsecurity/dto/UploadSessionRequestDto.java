@@ -0,0 +1,13 @@
+package com.updmtProjects.webfluxsecurity.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class UploadSessionRequestDto {
+
+    private String fileName;
+    // total size of the file in bytes
+    private long uploadLength;
+}
@@ -19,7 +19,15 @@ public class File {
     @Id
     private Long id;
     private String fileName;
+    private String storageKey;
     private String storageLink;
     private LocalDateTime created;
     private boolean deleted;
+    private UploadStatus uploadStatus;
+    private int uploadAttempts;
+    private LocalDateTime uploadAttemptedAt;
+    private String contentHash;
+    private Long uploadedBy;
+    // node whose staging directory holds the content until it is stored
+    private String stagedOn;
 }
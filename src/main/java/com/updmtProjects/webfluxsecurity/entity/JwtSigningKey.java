@@ -0,0 +1,26 @@
+package com.updmtProjects.webfluxsecurity.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Table(name = "jwt_signing_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class JwtSigningKey {
+
+    @Id
+    private String kid;
+    private String algorithm;
+    private String publicKey;
+    private String privateKey;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,26 @@
+package com.updmtProjects.webfluxsecurity.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Table(name = "refresh_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class RefreshToken {
+
+    @Id
+    private Long id;
+    private String tokenHash;
+    private Long userId;
+    private LocalDateTime expiresAt;
+    private boolean revoked;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,23 @@
+package com.updmtProjects.webfluxsecurity.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Table(name = "revoked_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class RevokedToken {
+
+    @Id
+    private String jti;
+    private LocalDateTime expiresAt;
+    private LocalDateTime revokedAt;
+}
@@ -0,0 +1,33 @@
+package com.updmtProjects.webfluxsecurity.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Table(name = "upload_sessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class UploadSession {
+
+    @Id
+    private Long id;
+    private Long userId;
+    private String fileName;
+    private String storageKey;
+    private String multipartUploadId;
+    private long uploadLength;
+    private long uploadOffset;
+    private int chunkSize;
+    private UploadSessionStatus status;
+    private LocalDateTime lockedUntil;
+    private Long fileId;
+    private LocalDateTime created;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,16 @@
+package com.updmtProjects.webfluxsecurity.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionPart {
+
+    private Long sessionId;
+    private int partNumber;
+    private String etag;
+    private long size;
+}
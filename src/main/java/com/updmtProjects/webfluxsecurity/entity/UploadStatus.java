@@ -0,0 +1,5 @@
+package com.updmtProjects.webfluxsecurity.entity;
+
+public enum UploadStatus {
+    PENDING, STORED, FAILED
+}
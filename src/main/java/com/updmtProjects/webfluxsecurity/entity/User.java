@@ -27,4 +27,5 @@ public class User {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private boolean deleted;
+    private int tokenVersion;
 }
@@ -0,0 +1,8 @@
+package com.updmtProjects.webfluxsecurity.exception;
+
+public class BadRequestException extends ApiException {
+
+    public BadRequestException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
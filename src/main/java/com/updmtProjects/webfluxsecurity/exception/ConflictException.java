@@ -0,0 +1,8 @@
+package com.updmtProjects.webfluxsecurity.exception;
+
+public class ConflictException extends ApiException {
+
+    public ConflictException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
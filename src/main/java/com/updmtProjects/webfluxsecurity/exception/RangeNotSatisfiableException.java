@@ -0,0 +1,15 @@
+package com.updmtProjects.webfluxsecurity.exception;
+
+public class RangeNotSatisfiableException extends ApiException {
+
+    private final long contentLength;
+
+    public RangeNotSatisfiableException(String message, long contentLength) {
+        super(message, "RANGE_NOT_SATISFIABLE");
+        this.contentLength = contentLength;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+}
@@ -0,0 +1,8 @@
+package com.updmtProjects.webfluxsecurity.exception;
+
+public class ServiceUnavailableException extends ApiException {
+
+    public ServiceUnavailableException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+}
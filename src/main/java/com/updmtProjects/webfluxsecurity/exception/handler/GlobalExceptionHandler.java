@@ -1,8 +1,14 @@
 package com.updmtProjects.webfluxsecurity.exception.handler;
 
 import com.updmtProjects.webfluxsecurity.exception.AuthException;
+import com.updmtProjects.webfluxsecurity.exception.BadRequestException;
+import com.updmtProjects.webfluxsecurity.exception.ConflictException;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
 import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
+import com.updmtProjects.webfluxsecurity.exception.RangeNotSatisfiableException;
+import com.updmtProjects.webfluxsecurity.exception.ServiceUnavailableException;
+import com.updmtProjects.webfluxsecurity.exception.TooManyRequestsException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -38,4 +44,52 @@ public class GlobalExceptionHandler {
                         .body(ex.getMessage())
         );
     }
+
+    @ExceptionHandler(BadRequestException.class)
+    public Mono<ResponseEntity<String>> handleBadRequestException(BadRequestException ex) {
+        return Mono.just(
+                ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ex.getMessage())
+        );
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public Mono<ResponseEntity<String>> handleConflictException(ConflictException ex) {
+        return Mono.just(
+                ResponseEntity
+                        .status(HttpStatus.CONFLICT)
+                        .body(ex.getMessage())
+        );
+    }
+
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public Mono<ResponseEntity<String>> handleRangeNotSatisfiableException(RangeNotSatisfiableException ex) {
+        return Mono.just(
+                ResponseEntity
+                        .status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + ex.getContentLength())
+                        .body(ex.getMessage())
+        );
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public Mono<ResponseEntity<String>> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        return Mono.just(
+                ResponseEntity
+                        .status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(ex.getMessage())
+        );
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public Mono<ResponseEntity<String>> handleTooManyRequestsException(TooManyRequestsException ex) {
+        return Mono.just(
+                ResponseEntity
+                        .status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                        .body(ex.getMessage())
+        );
+    }
 }
@@ -0,0 +1,11 @@
+package com.updmtProjects.webfluxsecurity.mapper;
+
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionDto;
+import com.updmtProjects.webfluxsecurity.entity.UploadSession;
+import org.mapstruct.Mapper;
+
+@Mapper(componentModel = "spring")
+public interface UploadSessionMapper {
+
+    UploadSessionDto map(UploadSession uploadSession);
+}
@@ -0,0 +1,16 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.Event;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface EventBatchRepository {
+
+    /**
+     * Inserts all events with one multi-row INSERT; the ids are not read back.
+     *
+     * @return the number of inserted rows
+     */
+    Mono<Long> insertAll(List<Event> events);
+}
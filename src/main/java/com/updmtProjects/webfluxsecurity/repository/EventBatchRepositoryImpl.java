@@ -0,0 +1,37 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.Event;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+@RequiredArgsConstructor
+public class EventBatchRepositoryImpl implements EventBatchRepository {
+
+    private static final String INSERT_EVENTS = "INSERT INTO events (created, file_id, user_id) VALUES ";
+    private static final String ROW = "(:created%1$d, :fileId%1$d, :userId%1$d)";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<Event> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0L);
+        }
+        StringJoiner rows = new StringJoiner(", ", INSERT_EVENTS, "");
+        for (int i = 0; i < events.size(); i++) {
+            rows.add(ROW.formatted(i));
+        }
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(rows.toString());
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            insert = insert.bind("created" + i, event.getCreated())
+                    .bind("fileId" + i, event.getFileId())
+                    .bind("userId" + i, event.getUserId());
+        }
+        return insert.fetch().rowsUpdated();
+    }
+}
@@ -4,6 +4,12 @@ import com.updmtProjects.webfluxsecurity.entity.Event;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import reactor.core.publisher.Flux;
 
-public interface EventRepository extends R2dbcRepository<Event, Long> {
+import java.util.Collection;
+
+public interface EventRepository extends R2dbcRepository<Event, Long>, EventBatchRepository, EventWithFileRepository {
     Flux<Event> findByUserId(Long userId);
+
+    Flux<Event> findByUserIdInOrderById(Collection<Long> userIds);
+
+    Flux<Event> findByFileIdInOrderById(Collection<Long> fileIds);
 }
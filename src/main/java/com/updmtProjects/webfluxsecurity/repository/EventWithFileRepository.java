@@ -0,0 +1,23 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads events together with their files in one query; the rows are mapped straight into
+ * {@link EventDto} and streamed as they arrive.
+ */
+public interface EventWithFileRepository {
+
+    Mono<EventDto> findWithFileById(Long id);
+
+    Flux<EventDto> findAllWithFile();
+
+    Flux<EventDto> findAllWithFileByUserId(Long userId);
+
+    // keyset pages, see KeysetPage
+    Flux<EventDto> findPageWithFile(long afterId, int limit);
+
+    Flux<EventDto> findPageWithFileByUserId(Long userId, long afterId, int limit);
+}
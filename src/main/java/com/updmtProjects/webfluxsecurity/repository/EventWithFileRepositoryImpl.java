@@ -0,0 +1,81 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
+import com.updmtProjects.webfluxsecurity.dto.FileDto;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+public class EventWithFileRepositoryImpl implements EventWithFileRepository {
+
+    private static final String SELECT_EVENTS_WITH_FILES = "SELECT e.id AS event_id, e.created AS event_created, " +
+            "f.id AS file_id, f.file_name, f.storage_link, f.created AS file_created, f.deleted, f.upload_status " +
+            "FROM events e JOIN files f ON f.id = e.file_id ";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<EventDto> findWithFileById(Long id) {
+        return databaseClient.sql(SELECT_EVENTS_WITH_FILES + "WHERE e.id = :id")
+                .bind("id", id)
+                .map(EventWithFileRepositoryImpl::mapRow)
+                .one();
+    }
+
+    @Override
+    public Flux<EventDto> findAllWithFile() {
+        return databaseClient.sql(SELECT_EVENTS_WITH_FILES + "ORDER BY e.id")
+                .map(EventWithFileRepositoryImpl::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<EventDto> findAllWithFileByUserId(Long userId) {
+        return databaseClient.sql(SELECT_EVENTS_WITH_FILES + "WHERE e.user_id = :userId ORDER BY e.id")
+                .bind("userId", userId)
+                .map(EventWithFileRepositoryImpl::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<EventDto> findPageWithFile(long afterId, int limit) {
+        return databaseClient.sql(SELECT_EVENTS_WITH_FILES + "WHERE e.id > :afterId ORDER BY e.id LIMIT :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(EventWithFileRepositoryImpl::mapRow)
+                .all();
+    }
+
+    // served by the (user_id) index of fk_events_users, InnoDB keeps the primary key in it in order
+    @Override
+    public Flux<EventDto> findPageWithFileByUserId(Long userId, long afterId, int limit) {
+        return databaseClient.sql(SELECT_EVENTS_WITH_FILES + "WHERE e.user_id = :userId AND e.id > :afterId ORDER BY e.id LIMIT :limit")
+                .bind("userId", userId)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(EventWithFileRepositoryImpl::mapRow)
+                .all();
+    }
+
+    private static EventDto mapRow(Readable row) {
+        FileDto fileDto = new FileDto();
+        fileDto.setId(row.get("file_id", Long.class));
+        fileDto.setFileName(row.get("file_name", String.class));
+        fileDto.setStorageLink(row.get("storage_link", String.class));
+        fileDto.setCreated(row.get("file_created", LocalDateTime.class));
+        fileDto.setDeleted(Boolean.TRUE.equals(row.get("deleted", Boolean.class)));
+        fileDto.setUploadStatus(UploadStatus.valueOf(row.get("upload_status", String.class)));
+
+        EventDto eventDto = new EventDto();
+        eventDto.setId(row.get("event_id", Long.class));
+        eventDto.setCreated(row.get("event_created", LocalDateTime.class));
+        eventDto.setFileGetDto(fileDto);
+        return eventDto;
+    }
+}
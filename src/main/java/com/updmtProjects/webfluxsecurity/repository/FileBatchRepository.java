@@ -0,0 +1,17 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.File;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+public interface FileBatchRepository {
+
+    /**
+     * Inserts all files with one multi-row INSERT. The files must have distinct storage keys, they are
+     * used to read the rows back with their ids.
+     *
+     * @return the inserted files in the given order
+     */
+    Flux<File> insertAll(List<File> files);
+}
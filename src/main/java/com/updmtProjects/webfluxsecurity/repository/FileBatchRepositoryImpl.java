@@ -0,0 +1,69 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.File;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+@RequiredArgsConstructor
+public class FileBatchRepositoryImpl implements FileBatchRepository {
+
+    private static final String INSERT_FILES = "INSERT INTO files (file_name, storage_key, storage_link, created, deleted, " +
+            "upload_status, upload_attempts, upload_attempted_at, content_hash, uploaded_by, staged_on) VALUES ";
+    private static final String ROW = "(:fileName%1$d, :storageKey%1$d, :storageLink%1$d, :created%1$d, :deleted%1$d, " +
+            ":uploadStatus%1$d, :uploadAttempts%1$d, :uploadAttemptedAt%1$d, :contentHash%1$d, :uploadedBy%1$d, :stagedOn%1$d)";
+
+    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+
+    @Override
+    public Flux<File> insertAll(List<File> files) {
+        if (files.isEmpty()) {
+            return Flux.empty();
+        }
+        StringJoiner rows = new StringJoiner(", ", INSERT_FILES, "");
+        for (int i = 0; i < files.size(); i++) {
+            rows.add(ROW.formatted(i));
+        }
+        DatabaseClient.GenericExecuteSpec insert = r2dbcEntityTemplate.getDatabaseClient().sql(rows.toString());
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            insert = bind(insert, "fileName" + i, file.getFileName(), String.class);
+            insert = bind(insert, "storageKey" + i, file.getStorageKey(), String.class);
+            insert = bind(insert, "storageLink" + i, file.getStorageLink(), String.class);
+            insert = bind(insert, "created" + i, file.getCreated(), LocalDateTime.class);
+            insert = insert.bind("deleted" + i, file.isDeleted());
+            insert = insert.bind("uploadStatus" + i, file.getUploadStatus().name());
+            insert = insert.bind("uploadAttempts" + i, file.getUploadAttempts());
+            insert = bind(insert, "uploadAttemptedAt" + i, file.getUploadAttemptedAt(), LocalDateTime.class);
+            insert = bind(insert, "contentHash" + i, file.getContentHash(), String.class);
+            insert = bind(insert, "uploadedBy" + i, file.getUploadedBy(), Long.class);
+            insert = bind(insert, "stagedOn" + i, file.getStagedOn(), String.class);
+        }
+
+        List<String> storageKeys = files.stream().map(File::getStorageKey).toList();
+        return insert.fetch().rowsUpdated()
+                .thenMany(r2dbcEntityTemplate.select(File.class)
+                        .matching(query(where("storage_key").in(storageKeys)))
+                        .all())
+                .collectMap(File::getStorageKey, Function.identity())
+                .flatMapIterable(inserted -> storageKeys.stream()
+                        .map(inserted::get)
+                        .collect(Collectors.toList()));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                          Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+}
@@ -1,8 +1,51 @@
 package com.updmtProjects.webfluxsecurity.repository;
 
 import com.updmtProjects.webfluxsecurity.entity.File;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface FileRepository extends R2dbcRepository<File, Long> {
+import java.time.LocalDateTime;
 
+public interface FileRepository extends R2dbcRepository<File, Long>, FileBatchRepository {
+
+    // staging is node-local, a node only retries the uploads staged on it; direct uploads are never staged
+    @Query("SELECT * FROM files WHERE staged_on = :stagedOn AND upload_attempts < :maxAttempts " +
+            "AND (upload_status = 'FAILED' OR (upload_status = 'PENDING' AND upload_attempted_at < :staleBefore)) " +
+            "ORDER BY id LIMIT :limit")
+    Flux<File> findRetryableUploads(String stagedOn, int maxAttempts, LocalDateTime staleBefore, int limit);
+
+    /**
+     * Takes over an upload for another attempt; 0 means another node got it first.
+     */
+    @Modifying
+    @Query("UPDATE files SET upload_status = 'PENDING', upload_attempts = upload_attempts + 1, upload_attempted_at = :attemptedAt " +
+            "WHERE id = :id AND upload_status = :uploadStatus AND upload_attempts = :uploadAttempts")
+    Mono<Integer> claimUpload(Long id, String uploadStatus, int uploadAttempts, LocalDateTime attemptedAt);
+
+    /**
+     * Gives up an upload that cannot be retried anymore; 0 means another attempt got it first.
+     */
+    @Modifying
+    @Query("UPDATE files SET upload_status = 'FAILED', upload_attempts = :maxAttempts " +
+            "WHERE id = :id AND upload_status = :uploadStatus AND upload_attempts = :uploadAttempts")
+    Mono<Integer> giveUpUpload(Long id, String uploadStatus, int uploadAttempts, int maxAttempts);
+
+    @Modifying
+    @Query("UPDATE files SET upload_status = :uploadStatus WHERE id = :id")
+    Mono<Integer> updateUploadStatus(Long id, String uploadStatus);
+
+    // 0 when the upload was completed before
+    @Modifying
+    @Query("UPDATE files SET upload_status = 'STORED' WHERE id = :id AND upload_status = 'PENDING'")
+    Mono<Integer> completePendingUpload(Long id);
+
+    @Query("SELECT * FROM files WHERE content_hash = :contentHash AND upload_status = 'STORED' LIMIT 1")
+    Mono<File> findStoredByContentHash(String contentHash);
+
+    @Modifying
+    @Query("UPDATE files SET upload_status = 'STORED', storage_key = :storageKey, storage_link = :storageLink WHERE id = :id")
+    Mono<Integer> markStored(Long id, String storageKey, String storageLink);
 }
@@ -0,0 +1,12 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.JwtSigningKey;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+
+public interface JwtSigningKeyRepository extends R2dbcRepository<JwtSigningKey, String> {
+
+    Flux<JwtSigningKey> findByExpiresAtAfter(LocalDateTime dateTime);
+}
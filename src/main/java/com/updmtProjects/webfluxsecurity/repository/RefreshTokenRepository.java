@@ -0,0 +1,20 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.RefreshToken;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+public interface RefreshTokenRepository extends R2dbcRepository<RefreshToken, Long> {
+
+    Mono<RefreshToken> findByTokenHash(String tokenHash);
+
+    @Modifying
+    @Query("UPDATE refresh_tokens SET revoked = TRUE WHERE id = :id AND revoked = FALSE")
+    Mono<Integer> revokeById(Long id);
+
+    @Modifying
+    @Query("UPDATE refresh_tokens SET revoked = TRUE WHERE user_id = :userId AND revoked = FALSE")
+    Mono<Integer> revokeAllByUserId(Long userId);
+}
@@ -0,0 +1,21 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.RevokedToken;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface RevokedTokenRepository extends R2dbcRepository<RevokedToken, String> {
+
+    Flux<RevokedToken> findByExpiresAtAfter(LocalDateTime dateTime);
+
+    Flux<RevokedToken> findByRevokedAtAfter(LocalDateTime dateTime);
+
+    @Modifying
+    @Query("DELETE FROM revoked_tokens WHERE expires_at < :dateTime")
+    Mono<Integer> deleteExpiredBefore(LocalDateTime dateTime);
+}
@@ -0,0 +1,62 @@
+package com.updmtProjects.webfluxsecurity.repository;
+
+import com.updmtProjects.webfluxsecurity.entity.UploadSession;
+import com.updmtProjects.webfluxsecurity.entity.UploadSessionPart;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface UploadSessionRepository extends R2dbcRepository<UploadSession, Long> {
+
+    /**
+     * Locks an open session at the given offset for one chunk or the completion; 0 means the offset
+     * has moved on or another request holds the lock.
+     */
+    @Modifying
+    @Query("UPDATE upload_sessions SET locked_until = :lockedUntil " +
+            "WHERE id = :id AND status = 'OPEN' AND upload_offset = :uploadOffset AND (locked_until IS NULL OR locked_until < :now)")
+    Mono<Integer> lock(Long id, long uploadOffset, LocalDateTime now, LocalDateTime lockedUntil);
+
+    // only the holder of the lock releases it; a lock taken over by another request is left alone
+    @Modifying
+    @Query("UPDATE upload_sessions SET locked_until = NULL WHERE id = :id AND upload_offset = :uploadOffset AND locked_until = :lockedUntil")
+    Mono<Integer> unlock(Long id, long uploadOffset, LocalDateTime lockedUntil);
+
+    /**
+     * Moves the session on after a chunk; 0 means the lock given by lockedUntil timed out and was taken over.
+     */
+    @Modifying
+    @Query("UPDATE upload_sessions SET upload_offset = :newOffset, locked_until = NULL " +
+            "WHERE id = :id AND upload_offset = :uploadOffset AND locked_until = :lockedUntil")
+    Mono<Integer> advanceOffset(Long id, long uploadOffset, long newOffset, LocalDateTime lockedUntil);
+
+    @Modifying
+    @Query("UPDATE upload_sessions SET status = 'COMPLETED', file_id = :fileId, locked_until = NULL WHERE id = :id AND status = 'OPEN'")
+    Mono<Integer> markCompleted(Long id, Long fileId);
+
+    @Modifying
+    @Query("UPDATE upload_sessions SET status = 'ABORTED', locked_until = NULL WHERE id = :id AND status = 'OPEN'")
+    Mono<Integer> markAborted(Long id);
+
+    @Query("SELECT * FROM upload_sessions WHERE status = 'OPEN' AND expires_at < :now ORDER BY id LIMIT :limit")
+    Flux<UploadSession> findExpiredOpen(LocalDateTime now, int limit);
+
+    // a session that is being written or completed right now is left to the next sweep
+    @Modifying
+    @Query("UPDATE upload_sessions SET status = 'ABORTED', locked_until = NULL " +
+            "WHERE id = :id AND status = 'OPEN' AND expires_at < :now AND (locked_until IS NULL OR locked_until < :now)")
+    Mono<Integer> markExpired(Long id, LocalDateTime now);
+
+    // a chunk uploaded again after a failed attempt replaces the part
+    @Modifying
+    @Query("INSERT INTO upload_session_parts (session_id, part_number, etag, size) VALUES (:sessionId, :partNumber, :etag, :size) " +
+            "ON DUPLICATE KEY UPDATE etag = VALUES(etag), size = VALUES(size)")
+    Mono<Integer> savePart(Long sessionId, int partNumber, String etag, long size);
+
+    @Query("SELECT * FROM upload_session_parts WHERE session_id = :sessionId ORDER BY part_number")
+    Flux<UploadSessionPart> findParts(Long sessionId);
+}
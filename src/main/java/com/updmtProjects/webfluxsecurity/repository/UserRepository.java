@@ -1,10 +1,20 @@
 package com.updmtProjects.webfluxsecurity.repository;
 
 import com.updmtProjects.webfluxsecurity.entity.User;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface UserRepository extends R2dbcRepository<User, Long> {
 
     Mono<User> findByUsername(String username);
+
+    @Query("SELECT * FROM users WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<User> findPage(long afterId, int limit);
+
+    @Modifying
+    @Query("UPDATE users SET password = :newPassword WHERE id = :id AND password = :oldPassword")
+    Mono<Integer> replacePassword(Long id, String oldPassword, String newPassword);
 }
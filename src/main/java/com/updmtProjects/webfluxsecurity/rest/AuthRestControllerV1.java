@@ -2,14 +2,24 @@ package com.updmtProjects.webfluxsecurity.rest;
 
 import com.updmtProjects.webfluxsecurity.dto.AuthRequestDto;
 import com.updmtProjects.webfluxsecurity.dto.AuthResponseDto;
+import com.updmtProjects.webfluxsecurity.dto.RefreshRequestDto;
+import com.updmtProjects.webfluxsecurity.exception.TooManyRequestsException;
+import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
+import com.updmtProjects.webfluxsecurity.security.LoginRateLimiter;
 import com.updmtProjects.webfluxsecurity.security.SecurityService;
+import com.updmtProjects.webfluxsecurity.security.TokenDetails;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping(AuthRestControllerV1.ROOT_URL)
@@ -18,17 +28,48 @@ public class AuthRestControllerV1 {
     public static final String ROOT_URL = "/api/v1/auth";
 
     private final SecurityService securityService;
+    private final LoginRateLimiter loginRateLimiter;
 
     @PostMapping("/login")
-    public Mono<AuthResponseDto> login(@RequestBody AuthRequestDto dto) {
+    public Mono<AuthResponseDto> login(@RequestBody AuthRequestDto dto, ServerHttpRequest request) {
+        if (!loginRateLimiter.tryAcquire(dto.getUsername(), clientAddress(request))) {
+            return Mono.error(new TooManyRequestsException("Too many login attempts", loginRateLimiter.retryAfterSeconds()));
+        }
         return securityService.authenticate(dto.getUsername(), dto.getPassword())
-                .flatMap(tokenDetails -> Mono.just(
-                        AuthResponseDto.builder()
-                                .userId(tokenDetails.getUserId())
-                                .token(tokenDetails.getToken())
-                                .issuedAt(tokenDetails.getIssuedAt())
-                                .expiredAt(tokenDetails.getExpiresAt())
-                                .build()
-                ));
+                .map(this::toAuthResponse);
+    }
+
+    @PostMapping("/refresh")
+    public Mono<AuthResponseDto> refresh(@RequestBody RefreshRequestDto dto) {
+        return securityService.refresh(dto.getRefreshToken())
+                .map(this::toAuthResponse);
+    }
+
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout(Authentication authentication,
+                                             @RequestBody(required = false) RefreshRequestDto dto) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        String refreshToken = dto == null ? null : dto.getRefreshToken();
+        return securityService.logout(customPrincipal, refreshToken)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    private AuthResponseDto toAuthResponse(TokenDetails tokenDetails) {
+        return AuthResponseDto.builder()
+                .userId(tokenDetails.getUserId())
+                .token(tokenDetails.getToken())
+                .issuedAt(tokenDetails.getIssuedAt())
+                .expiredAt(tokenDetails.getExpiresAt())
+                .refreshToken(tokenDetails.getRefreshToken())
+                .refreshExpiredAt(tokenDetails.getRefreshExpiresAt())
+                .build();
+    }
+
+    private String clientAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return null;
+        }
+        return remoteAddress.getAddress().getHostAddress();
     }
 }
@@ -2,15 +2,23 @@ package com.updmtProjects.webfluxsecurity.rest;
 
 import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.service.EventManagementService;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 
 @RestController
 @RequiredArgsConstructor
@@ -18,6 +26,7 @@ import reactor.core.publisher.Mono;
 public class EventRestControllerV1 {
 
     public final static String ROOT_URL = "/api/v1/events";
+    public final static String LAST_EVENT_ID = "Last-Event-ID";
 
     private final EventManagementService eventManagementService;
 
@@ -26,14 +35,44 @@ public class EventRestControllerV1 {
         return eventManagementService.getEventDependingOnUserRole(authentication, eventId);
     }
 
+    /**
+     * Keyset-paged like every list endpoint; the cursor of the next page comes in the X-Next-Cursor header.
+     */
     @GetMapping("/all")
-    public Flux<EventDto> getAllEvents() {
+    public Mono<ResponseEntity<List<EventDto>>> getAllEvents(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(defaultValue = "${pagination.default-limit}") int limit) {
+        return eventManagementService.getEventsPage(cursor, limit)
+                .map(KeysetPage::toResponseEntity);
+    }
+
+    /**
+     * All events as NDJSON or SSE, each one written as soon as it is read; unpaged, for exports.
+     */
+    @GetMapping(value = "/all/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<EventDto> streamAllEvents() {
         return eventManagementService.getAllEvents();
     }
 
     @GetMapping("/all/{userId}")
-    public Flux<EventDto> getUserEvents(Authentication authentication, @PathVariable Long userId) {
-        return eventManagementService.getUserEventsDependingOnRole(authentication, userId);
+    public Mono<ResponseEntity<List<EventDto>>> getUserEvents(Authentication authentication, @PathVariable Long userId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "${pagination.default-limit}") int limit) {
+        return eventManagementService.getUserEventsPageDependingOnRole(authentication, userId, cursor, limit)
+                .map(KeysetPage::toResponseEntity);
     }
 
+    /**
+     * Live feed of the user's new events; send Last-Event-ID on reconnect to get what was missed.
+     * Only events registered on the node serving the connection arrive live.
+     */
+    @GetMapping(value = "/all/{userId}/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<EventDto>> getUserEventFeed(Authentication authentication, @PathVariable Long userId,
+                                                           @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId) {
+        return eventManagementService.getUserEventFeed(authentication, userId, lastEventId);
+    }
+
+    @GetMapping(value = "/all/{userId}/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<EventDto> streamUserEvents(Authentication authentication, @PathVariable Long userId) {
+        return eventManagementService.getUserEventsDependingOnRole(authentication, userId);
+    }
 }
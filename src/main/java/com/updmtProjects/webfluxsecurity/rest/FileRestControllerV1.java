@@ -1,20 +1,35 @@
 package com.updmtProjects.webfluxsecurity.rest;
 
+import com.updmtProjects.webfluxsecurity.dto.DirectUploadDto;
+import com.updmtProjects.webfluxsecurity.dto.DirectUploadRequestDto;
 import com.updmtProjects.webfluxsecurity.dto.FileDto;
+import com.updmtProjects.webfluxsecurity.dto.FileUploadResultDto;
+import com.updmtProjects.webfluxsecurity.dto.PresignedUrlDto;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
 import com.updmtProjects.webfluxsecurity.service.FileManagementService;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 @RestController
 @RequestMapping(FileRestControllerV1.ROOT_URL)
 @RequiredArgsConstructor
@@ -31,13 +46,83 @@ public class FileRestControllerV1 {
         return fileManagementService.uploadAndRegisterFile(filePart, userId);
     }
 
+    @PostMapping("/upload/batch")
+    public Flux<FileUploadResultDto> uploadFiles(@RequestPart("files") Flux<FilePart> fileParts, Authentication authentication) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        Long userId = customPrincipal.getId();
+        return fileManagementService.uploadAndRegisterFiles(fileParts, userId);
+    }
+
+    /**
+     * Direct upload: POST returns a presigned PUT for a new PENDING file, the client uploads the content
+     * straight to the object store and then calls POST .../complete.
+     */
+    @PostMapping("/direct-uploads")
+    public Mono<DirectUploadDto> createDirectUpload(@RequestBody DirectUploadRequestDto request, Authentication authentication) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        Long userId = customPrincipal.getId();
+        return fileManagementService.createDirectUpload(request, userId);
+    }
+
+    @PostMapping("/direct-uploads/{fileId}/complete")
+    public Mono<FileDto> completeDirectUpload(@PathVariable Long fileId, Authentication authentication) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        Long userId = customPrincipal.getId();
+        return fileManagementService.completeDirectUpload(fileId, userId);
+    }
+
     @GetMapping("/{fileId}")
     public Mono<FileDto> getFile(Authentication authentication, @PathVariable Long fileId) {
         return fileManagementService.getFileDependingOnUserRole(authentication, fileId);
     }
 
+    /**
+     * Streams the file content; a single byte range in the Range header gets 206 with that range.
+     */
+    @GetMapping("/{fileId}/content")
+    public Mono<ResponseEntity<Flux<ByteBuffer>>> getFileContent(Authentication authentication, @PathVariable Long fileId,
+                                                                 @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        return fileManagementService.getFileContent(authentication, fileId, range)
+                .map(object -> {
+                    ResponseEntity.BodyBuilder response = object.contentRange() == null
+                            ? ResponseEntity.ok()
+                            : ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, object.contentRange());
+                    response.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                            .contentLength(object.contentLength())
+                            .contentType(object.contentType() == null
+                                    ? MediaType.APPLICATION_OCTET_STREAM
+                                    : MediaType.parseMediaType(object.contentType()));
+                    if (object.contentDisposition() != null) {
+                        response.header(HttpHeaders.CONTENT_DISPOSITION, object.contentDisposition());
+                    }
+                    if (object.eTag() != null) {
+                        response.eTag(object.eTag());
+                    }
+                    return response.body(object.content());
+                });
+    }
+
+    @GetMapping("/{fileId}/download-url")
+    public Mono<PresignedUrlDto> getDownloadUrl(Authentication authentication, @PathVariable Long fileId) {
+        return fileManagementService.getDownloadUrl(authentication, fileId);
+    }
+
+    /**
+     * Keyset-paged; the cursor of the next page comes in the X-Next-Cursor header.
+     */
     @GetMapping("all/{userId}")
-    public Flux<FileDto> getUserFiles(Authentication authentication, @PathVariable Long userId) {
+    public Mono<ResponseEntity<List<FileDto>>> getUserFiles(Authentication authentication, @PathVariable Long userId,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "${pagination.default-limit}") int limit) {
+        return fileManagementService.getUserFilesPageDependingOnRole(authentication, userId, cursor, limit)
+                .map(KeysetPage::toResponseEntity);
+    }
+
+    /**
+     * All files of the user as NDJSON or SSE, each one written as soon as it is read; unpaged, for exports.
+     */
+    @GetMapping(value = "all/{userId}/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<FileDto> streamUserFiles(Authentication authentication, @PathVariable Long userId) {
         return fileManagementService.getUserFilesDependingOnRole(authentication, userId);
     }
 }
@@ -0,0 +1,24 @@
+package com.updmtProjects.webfluxsecurity.rest;
+
+import com.updmtProjects.webfluxsecurity.security.JwtKeyManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class JwksRestController {
+
+    public static final String JWKS_URL = "/.well-known/jwks.json";
+
+    private final JwtKeyManager jwtKeyManager;
+
+    @GetMapping(JWKS_URL)
+    public Mono<Map<String, List<Map<String, Object>>>> getJwks() {
+        return Mono.fromSupplier(() -> Map.of("keys", jwtKeyManager.jwks()));
+    }
+}
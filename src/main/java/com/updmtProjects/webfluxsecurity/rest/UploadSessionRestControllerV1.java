@@ -0,0 +1,88 @@
+package com.updmtProjects.webfluxsecurity.rest;
+
+import com.updmtProjects.webfluxsecurity.dto.FileDto;
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionDto;
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionRequestDto;
+import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
+import com.updmtProjects.webfluxsecurity.service.FileManagementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * Resumable uploads: POST creates a session, PATCH sends the chunk at Upload-Offset, GET or HEAD
+ * returns the offset to resume from, POST .../complete registers the file, DELETE aborts.
+ */
+@RestController
+@RequestMapping(UploadSessionRestControllerV1.ROOT_URL)
+@RequiredArgsConstructor
+public class UploadSessionRestControllerV1 {
+
+    public static final String ROOT_URL = "/api/v1/files/uploads";
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final FileManagementService fileManagementService;
+
+    @PostMapping
+    public Mono<ResponseEntity<UploadSessionDto>> createSession(@RequestBody UploadSessionRequestDto request, Authentication authentication) {
+        return fileManagementService.createUploadSession(request, userId(authentication))
+                .map(session -> ResponseEntity.created(URI.create(ROOT_URL + "/" + session.getId()))
+                        .header(UPLOAD_OFFSET, String.valueOf(session.getUploadOffset()))
+                        .header(UPLOAD_LENGTH, String.valueOf(session.getUploadLength()))
+                        .body(session));
+    }
+
+    @GetMapping("/{sessionId}")
+    public Mono<ResponseEntity<UploadSessionDto>> getSession(@PathVariable Long sessionId, Authentication authentication) {
+        return fileManagementService.getUploadSession(sessionId, userId(authentication))
+                .map(session -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noStore())
+                        .header(UPLOAD_OFFSET, String.valueOf(session.getUploadOffset()))
+                        .header(UPLOAD_LENGTH, String.valueOf(session.getUploadLength()))
+                        .body(session));
+    }
+
+    @PatchMapping("/{sessionId}")
+    public Mono<ResponseEntity<Void>> appendChunk(@PathVariable Long sessionId,
+                                                  @RequestHeader(UPLOAD_OFFSET) long offset,
+                                                  @RequestHeader(HttpHeaders.CONTENT_LENGTH) long contentLength,
+                                                  @RequestBody Flux<DataBuffer> content,
+                                                  Authentication authentication) {
+        return fileManagementService.appendUploadChunk(sessionId, userId(authentication), offset, contentLength, content)
+                .map(newOffset -> ResponseEntity.noContent()
+                        .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                        .build());
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public Mono<FileDto> completeSession(@PathVariable Long sessionId, Authentication authentication) {
+        return fileManagementService.completeUploadSession(sessionId, userId(authentication));
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public Mono<ResponseEntity<Void>> abortSession(@PathVariable Long sessionId, Authentication authentication) {
+        return fileManagementService.abortUploadSession(sessionId, userId(authentication))
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    private static Long userId(Authentication authentication) {
+        return ((CustomPrincipal) authentication.getPrincipal()).getId();
+    }
+}
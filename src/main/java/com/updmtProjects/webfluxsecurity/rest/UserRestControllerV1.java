@@ -8,7 +8,9 @@ import com.updmtProjects.webfluxsecurity.mapper.UserMapper;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
 import com.updmtProjects.webfluxsecurity.service.UserManagementService;
 import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -18,10 +20,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping(UserRestControllerV1.ROOT_URL)
@@ -45,8 +50,22 @@ public class UserRestControllerV1 {
         return userManagementService.getUserInfo(id);
     }
 
+    /**
+     * Keyset-paged; the cursor of the next page comes in the X-Next-Cursor header.
+     */
     @GetMapping("/all")
-    public Flux<UserResponseDto> getAllUsers() {
+    public Mono<ResponseEntity<List<UserResponseDto>>> getAllUsers(@RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "${pagination.default-limit}") int limit) {
+        return userManagementService.getUsersInfoPage(cursor, limit)
+                .map(KeysetPage::toResponseEntity);
+    }
+
+    /**
+     * All users with their events as NDJSON or SSE, each user written as soon as its batch is joined;
+     * unpaged, for exports.
+     */
+    @GetMapping(value = "/all/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<UserResponseDto> streamAllUsers() {
         return userManagementService.getAllUsersInfo();
     }
 
@@ -1,6 +1,6 @@
 package com.updmtProjects.webfluxsecurity.security;
 
-import com.updmtProjects.webfluxsecurity.entity.User;
+import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
 import com.updmtProjects.webfluxsecurity.exception.UnauthorizedException;
 import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
 import lombok.RequiredArgsConstructor;
@@ -14,13 +14,44 @@ import reactor.core.publisher.Mono;
 public class AuthenticationManager implements ReactiveAuthenticationManager {
 
     private final UserService userService;
+    private final PrincipalStatusCache principalStatusCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     public Mono<Authentication> authenticate(Authentication authentication) {
         CustomPrincipal principal = (CustomPrincipal) authentication.getPrincipal();
-        return userService.getUserById(principal.getId())
-                .filter(User::isEnabled)
+        if (tokenRevocationService.mightBeRevoked(principal.getTokenId())) {
+            return tokenRevocationService.isRevoked(principal.getTokenId())
+                    .flatMap(revoked -> revoked
+                            ? Mono.error(new UnauthorizedException("Token revoked"))
+                            : authenticateActive(authentication, principal));
+        }
+        return authenticateActive(authentication, principal);
+    }
+
+    private Mono<Authentication> authenticateActive(Authentication authentication, CustomPrincipal principal) {
+        TokenVersionRegistry.TokenState state = tokenVersionRegistry.currentState(principal.getId());
+        if (state != null) {
+            if (!state.active()) {
+                return Mono.error(new UnauthorizedException("User disabled"));
+            }
+            // a token newer than the known version comes from a change on another node that is not synced yet
+            if (principal.getTokenVersion() < state.version()) {
+                return Mono.error(new UnauthorizedException("Token revoked"));
+            }
+            return Mono.just(authentication);
+        }
+        return principalStatusCache.get(principal.getId(), this::loadStatus)
+                .doOnNext(status -> tokenVersionRegistry.update(principal.getId(), status.getTokenVersion(), status.isActive()))
+                .filter(status -> status.isActive() && principal.getTokenVersion() >= status.getTokenVersion())
                 .switchIfEmpty(Mono.error(new UnauthorizedException("User disabled")))
-                .map(user -> authentication);
+                .map(status -> authentication);
+    }
+
+    private Mono<PrincipalStatus> loadStatus(Long userId) {
+        return userService.getUserById(userId)
+                .onErrorMap(CustomNotFoundException.class, e -> new UnauthorizedException("User not found"))
+                .map(PrincipalStatus::from);
     }
 }
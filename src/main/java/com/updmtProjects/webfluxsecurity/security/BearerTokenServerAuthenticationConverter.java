@@ -1,5 +1,6 @@
 package com.updmtProjects.webfluxsecurity.security;
 
+import com.updmtProjects.webfluxsecurity.exception.UnauthorizedException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
@@ -7,26 +8,31 @@ import org.springframework.security.web.server.authentication.ServerAuthenticati
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.util.function.Function;
-
 @RequiredArgsConstructor
 public class BearerTokenServerAuthenticationConverter implements ServerAuthenticationConverter {
 
     private final JwtHandler jwtHandler;
     private static final String BEARER_PREFIX = "Bearer ";
-    private static final Function<String, Mono<String>> getBearerValue = authValue -> Mono.justOrEmpty(authValue.substring(BEARER_PREFIX.length()));
 
+    /**
+     * Verification is synchronous (and usually a cache hit), so the whole conversion runs inline
+     * and only the result is wrapped into a single Mono.
+     */
     @Override
     public Mono<Authentication> convert(ServerWebExchange exchange) {
-        return extractHeader(exchange)
-                .flatMap(getBearerValue)
-                .flatMap(jwtHandler::check)
-                .flatMap(UserAuthenticationBearer::create);
-    }
-
-    private Mono<String> extractHeader(ServerWebExchange exchange) {
-        return Mono.justOrEmpty(exchange.getRequest()
+        String authValue = exchange.getRequest()
                 .getHeaders()
-                .getFirst(HttpHeaders.AUTHORIZATION));
+                .getFirst(HttpHeaders.AUTHORIZATION);
+        if (authValue == null || !authValue.startsWith(BEARER_PREFIX)) {
+            return Mono.empty();
+        }
+        try {
+            JwtHandler.VerificationResult verificationResult = jwtHandler.verify(authValue, BEARER_PREFIX.length());
+            return Mono.just(UserAuthenticationBearer.createAuthentication(verificationResult));
+        } catch (UnauthorizedException e) {
+            return Mono.error(e);
+        } catch (RuntimeException e) {
+            return Mono.error(new UnauthorizedException(e.getMessage()));
+        }
     }
 }
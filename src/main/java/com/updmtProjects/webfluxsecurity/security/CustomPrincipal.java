@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.security.Principal;
+import java.util.Date;
 
 @Data
 @NoArgsConstructor
@@ -14,4 +15,7 @@ public class CustomPrincipal implements Principal {
     private Long id;
     private String name;
     private String role;
+    private int tokenVersion;
+    private String tokenId;
+    private Date tokenExpiresAt;
 }
@@ -2,26 +2,74 @@ package com.updmtProjects.webfluxsecurity.security;
 
 import com.updmtProjects.webfluxsecurity.exception.UnauthorizedException;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolver;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import reactor.core.publisher.Mono;
 
-import java.util.Base64;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
+import java.security.PublicKey;
 import java.util.Date;
+import java.util.function.Function;
 
 public class JwtHandler {
 
-    private final String secret;
+    private final Key legacySecretKey;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final JwtKeyManager jwtKeyManager;
+    private final SigningKeyResolver signingKeyResolver = new SigningKeyResolverAdapter() {
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            return resolveKey(header);
+        }
+    };
+    // configured once; parsing does not mutate the parser, so it is shared between requests
+    private final JwtParser jwtParser = Jwts.parser().setSigningKeyResolver(signingKeyResolver);
+    private final Function<String, VerificationResult> verifier = this::parseAndVerify;
 
-    public JwtHandler(String secret) {
-        this.secret = secret;
+    /**
+     * @param legacySecret HS256 secret of tokens issued before asymmetric signing, or null to reject them
+     */
+    public JwtHandler(String legacySecret, VerifiedTokenCache verifiedTokenCache, JwtKeyManager jwtKeyManager) {
+        this.legacySecretKey = legacySecret == null
+                ? null
+                : new SecretKeySpec(legacySecret.getBytes(), SignatureAlgorithm.HS256.getJcaName());
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.jwtKeyManager = jwtKeyManager;
     }
 
     public Mono<VerificationResult> check(String accessToken) {
-        return Mono.just(verify(accessToken))
-                .onErrorResume(e -> Mono.error(new UnauthorizedException(e.getMessage())));
+        return Mono.fromCallable(() -> verify(accessToken));
+    }
+
+    /**
+     * Synchronous verification for the bearer authentication fast path.
+     *
+     * @throws UnauthorizedException if the token is invalid or expired
+     */
+    public VerificationResult verify(String accessToken) {
+        return verify(accessToken, 0);
+    }
+
+    /**
+     * Verifies the token that starts at the offset of the value, e.g. right after the "Bearer " prefix.
+     *
+     * @throws UnauthorizedException if the token is invalid or expired
+     */
+    public VerificationResult verify(String value, int offset) {
+        try {
+            return verifiedTokenCache.get(value, offset, verifier);
+        } catch (RuntimeException e) {
+            throw new UnauthorizedException(e.getMessage());
+        }
     }
 
-    private VerificationResult verify(String token) {
+    private VerificationResult parseAndVerify(String token) {
         Claims claims = getClaimsFromToken(token);
         Date expirationDate = claims.getExpiration();
 
@@ -32,10 +80,25 @@ public class JwtHandler {
     }
 
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(Base64.getEncoder().encodeToString(secret.getBytes()))
-                .parseClaimsJws(token)
-                .getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    private Key resolveKey(JwsHeader header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            if (legacySecretKey != null && SignatureAlgorithm.HS256.getValue().equals(header.getAlgorithm())) {
+                return legacySecretKey;
+            }
+            throw new JwtException("Token key id is missing");
+        }
+        if (!JwtKeyManager.ALGORITHM.equals(header.getAlgorithm())) {
+            throw new JwtException("Unsupported token algorithm " + header.getAlgorithm());
+        }
+        PublicKey publicKey = jwtKeyManager.verificationKey(kid);
+        if (publicKey == null) {
+            throw new JwtException("Unknown token key id " + kid);
+        }
+        return publicKey;
     }
 
     public static class VerificationResult {
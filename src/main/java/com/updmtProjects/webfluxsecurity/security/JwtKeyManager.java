@@ -0,0 +1,299 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.updmtProjects.webfluxsecurity.entity.JwtSigningKey;
+import com.updmtProjects.webfluxsecurity.repository.JwtSigningKeyRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps the ES256 signing keys shared by all nodes through the jwt_signing_keys table.
+ * A new key is generated every rotation interval and only becomes the signing key after the
+ * propagation delay, so every node has refreshed its verification keys before tokens signed
+ * with it show up. Retired keys stay available for verification until tokens signed with them expire.
+ * Private keys are stored encrypted with AES-GCM under {@code jwt.keys.encryption-key}, with the kid as
+ * associated data so a row cannot be passed off as another key. Rows written before encryption was added
+ * are still read as plain PKCS8 until they expire.
+ */
+@Slf4j
+@Component
+public class JwtKeyManager {
+
+    public static final String ALGORITHM = "ES256";
+
+    private static final String KEY_ALGORITHM = "EC";
+    private static final String CURVE = "secp256r1";
+    private static final int COORDINATE_LENGTH = 32;
+    private static final String ENCRYPTED_PREFIX = "aes-gcm:";
+    private static final String CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int ENCRYPTION_KEY_LENGTH = 32;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final JwtSigningKeyRepository jwtSigningKeyRepository;
+    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+    private final Duration rotationInterval;
+    private final Duration propagationDelay;
+    private final Duration refreshInterval;
+    private final Duration tokenLifetime;
+    private final SecretKey encryptionKey;
+
+    // earliest System.nanoTime() at which an unknown kid may trigger another refresh
+    private final AtomicLong nextMissRefreshAt = new AtomicLong(System.nanoTime());
+    private volatile KeySnapshot snapshot = KeySnapshot.EMPTY;
+    private Disposable refreshTask;
+
+    public JwtKeyManager(JwtSigningKeyRepository jwtSigningKeyRepository,
+                         R2dbcEntityTemplate r2dbcEntityTemplate,
+                         @Value("${jwt.keys.rotation-interval}") Duration rotationInterval,
+                         @Value("${jwt.keys.propagation-delay}") Duration propagationDelay,
+                         @Value("${jwt.keys.refresh-interval}") Duration refreshInterval,
+                         @Value("${jwt.expiration}") Integer expirationInSeconds,
+                         @Value("${jwt.keys.encryption-key}") String encryptionKey) {
+        this.jwtSigningKeyRepository = jwtSigningKeyRepository;
+        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+        this.rotationInterval = rotationInterval;
+        this.propagationDelay = propagationDelay;
+        this.refreshInterval = refreshInterval;
+        this.tokenLifetime = Duration.ofSeconds(expirationInSeconds);
+        byte[] encryptionKeyBytes = Base64.getDecoder().decode(encryptionKey);
+        if (encryptionKeyBytes.length != ENCRYPTION_KEY_LENGTH) {
+            throw new IllegalStateException("jwt.keys.encryption-key must be a Base64 encoded 256-bit key");
+        }
+        this.encryptionKey = new SecretKeySpec(encryptionKeyBytes, "AES");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRefreshing() {
+        refreshTask = Flux.interval(Duration.ZERO, refreshInterval)
+                .concatMap(tick -> refresh()
+                        .then(rotateIfDue())
+                        .onErrorResume(e -> {
+                            log.error("In startRefreshing - failed to refresh jwt keys: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopRefreshing() {
+        if (refreshTask != null) {
+            refreshTask.dispose();
+        }
+    }
+
+    public Mono<SigningKey> signingKey() {
+        SigningKey signingKey = snapshot.signingKey;
+        if (signingKey != null) {
+            return Mono.just(signingKey);
+        }
+        return refresh()
+                .then(rotateIfDue())
+                .then(Mono.fromSupplier(() -> snapshot.signingKey));
+    }
+
+    /**
+     * Returns the verification key for the kid, or null when it is unknown. An unknown kid
+     * may be a key that another node has just generated, so a background refresh is requested,
+     * at most once per refresh interval: anyone can send tokens with made-up kids.
+     */
+    public PublicKey verificationKey(String kid) {
+        PublicKey publicKey = snapshot.verificationKeys.get(kid);
+        if (publicKey == null) {
+            long now = System.nanoTime();
+            long allowedAt = nextMissRefreshAt.get();
+            if (now - allowedAt >= 0 && nextMissRefreshAt.compareAndSet(allowedAt, now + refreshInterval.toNanos())) {
+                refresh().subscribe(null, e -> log.error("In verificationKey - failed to refresh jwt keys: {}", e.getMessage()));
+            }
+        }
+        return publicKey;
+    }
+
+    public List<Map<String, Object>> jwks() {
+        return snapshot.jwks;
+    }
+
+    private Mono<Void> refresh() {
+        return jwtSigningKeyRepository.findByExpiresAtAfter(LocalDateTime.now())
+                .collectList()
+                .doOnNext(keys -> snapshot = KeySnapshot.of(keys, propagationDelay, this::decryptPrivateKey))
+                .then();
+    }
+
+    private Mono<Void> rotateIfDue() {
+        LocalDateTime newestCreatedAt = snapshot.newestCreatedAt;
+        if (newestCreatedAt != null && newestCreatedAt.isAfter(LocalDateTime.now().minus(rotationInterval))) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(this::generateKey)
+                .flatMap(r2dbcEntityTemplate::insert)
+                .doOnSuccess(key -> log.info("In rotateIfDue - jwt signing key {} generated", key.getKid()))
+                .then(refresh());
+    }
+
+    private JwtSigningKey generateKey() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+        generator.initialize(new ECGenParameterSpec(CURVE));
+        KeyPair keyPair = generator.generateKeyPair();
+
+        String kid = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        return JwtSigningKey.builder()
+                .kid(kid)
+                .algorithm(ALGORITHM)
+                .publicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()))
+                .privateKey(encryptPrivateKey(kid, keyPair.getPrivate()))
+                .createdAt(now)
+                .expiresAt(now.plus(propagationDelay).plus(rotationInterval).plus(tokenLifetime).plus(refreshInterval))
+                .build();
+    }
+
+    private String encryptPrivateKey(String kid, PrivateKey privateKey) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        byte[] encrypted = cipher.doFinal(privateKey.getEncoded());
+        return ENCRYPTED_PREFIX + Base64.getEncoder().encodeToString(
+                ByteBuffer.allocate(IV_LENGTH + encrypted.length).put(iv).put(encrypted).array());
+    }
+
+    private PrivateKey decryptPrivateKey(JwtSigningKey key) {
+        try {
+            if (!key.getPrivateKey().startsWith(ENCRYPTED_PREFIX)) {
+                return decodePrivateKey(Base64.getDecoder().decode(key.getPrivateKey()));
+            }
+            byte[] stored = Base64.getDecoder().decode(key.getPrivateKey().substring(ENCRYPTED_PREFIX.length()));
+            Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, stored, 0, IV_LENGTH));
+            cipher.updateAAD(key.getKid().getBytes(StandardCharsets.UTF_8));
+            return decodePrivateKey(cipher.doFinal(stored, IV_LENGTH, stored.length - IV_LENGTH));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static PrivateKey decodePrivateKey(byte[] encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(KEY_ALGORITHM).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+    }
+
+    private static class KeySnapshot {
+
+        static final KeySnapshot EMPTY = new KeySnapshot(Map.of(), null, null, List.of());
+
+        final Map<String, PublicKey> verificationKeys;
+        final SigningKey signingKey;
+        final LocalDateTime newestCreatedAt;
+        final List<Map<String, Object>> jwks;
+
+        KeySnapshot(Map<String, PublicKey> verificationKeys, SigningKey signingKey,
+                    LocalDateTime newestCreatedAt, List<Map<String, Object>> jwks) {
+            this.verificationKeys = verificationKeys;
+            this.signingKey = signingKey;
+            this.newestCreatedAt = newestCreatedAt;
+            this.jwks = jwks;
+        }
+
+        static KeySnapshot of(List<JwtSigningKey> keys, Duration propagationDelay,
+                              Function<JwtSigningKey, PrivateKey> privateKeyDecoder) {
+            if (keys.isEmpty()) {
+                return EMPTY;
+            }
+            keys.sort(Comparator.comparing(JwtSigningKey::getCreatedAt).reversed());
+            LocalDateTime activeBefore = LocalDateTime.now().minus(propagationDelay);
+
+            Map<String, PublicKey> verificationKeys = new LinkedHashMap<>();
+            List<Map<String, Object>> jwks = keys.stream()
+                    .map(key -> {
+                        ECPublicKey publicKey = decodePublicKey(key.getPublicKey());
+                        verificationKeys.put(key.getKid(), publicKey);
+                        return toJwk(key.getKid(), publicKey);
+                    })
+                    .toList();
+
+            // newest key that every node has already seen, or the newest one if there is no such key yet
+            JwtSigningKey active = keys.stream()
+                    .filter(key -> !key.getCreatedAt().isAfter(activeBefore))
+                    .findFirst()
+                    .orElse(keys.get(0));
+            SigningKey signingKey = new SigningKey(active.getKid(), privateKeyDecoder.apply(active));
+
+            return new KeySnapshot(Map.copyOf(verificationKeys), signingKey, keys.get(0).getCreatedAt(), jwks);
+        }
+
+        private static ECPublicKey decodePublicKey(String encoded) {
+            try {
+                return (ECPublicKey) KeyFactory.getInstance(KEY_ALGORITHM)
+                        .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static Map<String, Object> toJwk(String kid, ECPublicKey publicKey) {
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("use", "sig");
+            jwk.put("alg", ALGORITHM);
+            jwk.put("kid", kid);
+            jwk.put("x", encoder.encodeToString(toCoordinate(publicKey.getW().getAffineX())));
+            jwk.put("y", encoder.encodeToString(toCoordinate(publicKey.getW().getAffineY())));
+            return jwk;
+        }
+
+        private static byte[] toCoordinate(BigInteger value) {
+            byte[] bytes = value.toByteArray();
+            if (bytes.length == COORDINATE_LENGTH) {
+                return bytes;
+            }
+            if (bytes.length > COORDINATE_LENGTH) {
+                return Arrays.copyOfRange(bytes, bytes.length - COORDINATE_LENGTH, bytes.length);
+            }
+            byte[] padded = new byte[COORDINATE_LENGTH];
+            System.arraycopy(bytes, 0, padded, COORDINATE_LENGTH - bytes.length, bytes.length);
+            return padded;
+        }
+    }
+}
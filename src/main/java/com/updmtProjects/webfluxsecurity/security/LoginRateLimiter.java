@@ -0,0 +1,36 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Admission control for the public login endpoint, applied before any database lookup or hashing.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final SlidingWindowRateLimiter usernameLimiter;
+    private final SlidingWindowRateLimiter addressLimiter;
+
+    public LoginRateLimiter(@Value("${security.login-limiter.max-keys}") long maxKeys,
+                            @Value("${security.login-limiter.window}") Duration window,
+                            @Value("${security.login-limiter.username-limit}") int usernameLimit,
+                            @Value("${security.login-limiter.address-limit}") int addressLimit) {
+        this.usernameLimiter = new SlidingWindowRateLimiter(maxKeys, window, usernameLimit);
+        this.addressLimiter = new SlidingWindowRateLimiter(maxKeys, window, addressLimit);
+    }
+
+    public boolean tryAcquire(String username, String clientAddress) {
+        if (clientAddress != null && !addressLimiter.tryAcquire(clientAddress)) {
+            return false;
+        }
+        return username == null || usernameLimiter.tryAcquire(username.toLowerCase(Locale.ROOT));
+    }
+
+    public long retryAfterSeconds() {
+        return usernameLimiter.windowSeconds();
+    }
+}
@@ -1,42 +1,215 @@
 package com.updmtProjects.webfluxsecurity.security;
 
+import com.updmtProjects.webfluxsecurity.exception.ServiceUnavailableException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * PBKDF2-SHA512 hashes in a self-describing format: {@code $pbkdf2-sha512$i=<iterations>$<salt>$<hash>},
+ * with a random salt per password. The iteration count of new hashes is calibrated on startup to the
+ * target latency of one hash on this node. Hashes in the previous format (bare Base64, global salt,
+ * {@code jwt.password.encoder.iteration} iterations) and hashes below the cluster-wide
+ * {@code jwt.password.encoder.min-iterations} floor are still verified and reported by
+ * {@link #upgradeEncoding(String)}, so they are rehashed on the next successful login. Hashes above the
+ * floor are left alone, so the count calibrated on the fastest node does not spread to every user
+ * through rehashing and slow down verification on the others.
+ */
+@Slf4j
 @Component
-public class PBFDK2Encoder implements PasswordEncoder {
+public class PBFDK2Encoder implements ReactivePasswordEncoder {
 
     private static final String SECRET_KEY_INSTANCE = "PBKDF2WithHmacSHA512";
+    private static final String HASHING_SCHEDULER_NAME = "pbkdf2-hashing";
+    private static final String PREFIX = "$pbkdf2-sha512$";
+    private static final String ITERATIONS_PREFIX = "i=";
+    private static final int CALIBRATION_ITERATIONS = 10_000;
+    private static final int CALIBRATION_ROUNDS = 5;
+    private static final int ITERATIONS_STEP = 1_000;
 
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // salt and iteration count of hashes in the previous format
     @Value("${jwt.password.encoder.secret}")
     private String secret;
     @Value("${jwt.password.encoder.iteration}")
     private Integer iteration;
     @Value("${jwt.password.encoder.key_length}")
     private Integer keyLength;
+    @Value("${jwt.password.encoder.salt-length}")
+    private Integer saltLength;
+    @Value("${jwt.password.encoder.target-latency}")
+    private Duration targetLatency;
+    @Value("${jwt.password.encoder.min-iterations}")
+    private Integer minIterations;
+    @Value("${jwt.password.encoder.max-iterations}")
+    private Integer maxIterations;
+    @Value("${jwt.password.encoder.calibration-enabled}")
+    private boolean calibrationEnabled;
+    // 0 means one hashing thread per available processor
+    @Value("${jwt.password.encoder.pool-size}")
+    private Integer poolSize;
+    // hashes waiting across all threads; the scheduler bounds the queue of each thread
+    @Value("${jwt.password.encoder.queue-capacity}")
+    private Integer queueCapacity;
+
+    private volatile int currentIterations;
+    private Scheduler hashingScheduler;
+
+    @PostConstruct
+    public void init() {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        int queueCapacityPerThread = Math.max(1, (queueCapacity + threads - 1) / threads);
+        hashingScheduler = Schedulers.newBoundedElastic(threads, queueCapacityPerThread, HASHING_SCHEDULER_NAME);
+        currentIterations = calibrationEnabled ? calibrate() : minIterations;
+        log.info("In init - new password hashes use {} PBKDF2 iterations", currentIterations);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hashingScheduler.dispose();
+    }
+
+    public int getCurrentIterations() {
+        return currentIterations;
+    }
 
     @Override
     public String encode(CharSequence rawPassword) {
+        byte[] salt = new byte[saltLength];
+        secureRandom.nextBytes(salt);
+        int iterations = currentIterations;
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + ITERATIONS_PREFIX + iterations
+                + "$" + encoder.encodeToString(salt)
+                + "$" + encoder.encodeToString(hash(rawPassword, salt, iterations, keyLength));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        if (!encodedPassword.startsWith(PREFIX)) {
+            byte[] legacyHash = hash(rawPassword, secret.getBytes(), iteration, keyLength);
+            return MessageDigest.isEqual(Base64.getEncoder().encodeToString(legacyHash).getBytes(StandardCharsets.US_ASCII),
+                    encodedPassword.getBytes(StandardCharsets.US_ASCII));
+        }
+        EncodedHash encodedHash = EncodedHash.parse(encodedPassword);
+        if (encodedHash == null) {
+            return false;
+        }
+        byte[] actual = hash(rawPassword, encodedHash.salt, encodedHash.iterations, encodedHash.hash.length * 8);
+        return MessageDigest.isEqual(actual, encodedHash.hash);
+    }
+
+    /**
+     * True for hashes in the previous format and for hashes below the min-iterations floor;
+     * the calibrated cost of this node only applies to passwords set on it.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+            return true;
+        }
+        EncodedHash encodedHash = EncodedHash.parse(encodedPassword);
+        return encodedHash == null || encodedHash.iterations < minIterations;
+    }
+
+    @Override
+    public Mono<String> encodeAsync(CharSequence rawPassword) {
+        return onHashingScheduler(Mono.fromCallable(() -> encode(rawPassword)));
+    }
+
+    @Override
+    public Mono<Boolean> matchesAsync(CharSequence rawPassword, String encodedPassword) {
+        return onHashingScheduler(Mono.fromCallable(() -> matches(rawPassword, encodedPassword)));
+    }
+
+    private <T> Mono<T> onHashingScheduler(Mono<T> hashing) {
+        return hashing
+                .subscribeOn(hashingScheduler)
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ServiceUnavailableException("Password hashing capacity exceeded", "HASHING_OVERLOADED"));
+    }
+
+    /**
+     * Scales a probe hash to the target latency. The fastest of a few rounds is used,
+     * so the first, not yet compiled rounds do not inflate the count.
+     */
+    private int calibrate() {
+        byte[] salt = new byte[saltLength];
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+            long start = System.nanoTime();
+            hash("calibration", salt, CALIBRATION_ITERATIONS, keyLength);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        long iterations = CALIBRATION_ITERATIONS * targetLatency.toNanos() / Math.max(1L, bestNanos);
+        iterations = iterations / ITERATIONS_STEP * ITERATIONS_STEP;
+        int calibrated = (int) Math.max(minIterations, Math.min(maxIterations, iterations));
+        log.info("In calibrate - {} iterations took {} us, calibrated to {} iterations for {} ms",
+                CALIBRATION_ITERATIONS, bestNanos / 1_000, calibrated, targetLatency.toMillis());
+        return calibrated;
+    }
+
+    private static byte[] hash(CharSequence rawPassword, byte[] salt, int iterations, int keyLength) {
         try {
-            byte [] result = SecretKeyFactory.getInstance(SECRET_KEY_INSTANCE)
-                    .generateSecret(new PBEKeySpec(rawPassword.toString().toCharArray(),
-                            secret.getBytes(), iteration, keyLength))
+            return SecretKeyFactory.getInstance(SECRET_KEY_INSTANCE)
+                    .generateSecret(new PBEKeySpec(rawPassword.toString().toCharArray(), salt, iterations, keyLength))
                     .getEncoded();
-            return Base64.getEncoder().encodeToString(result);
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             throw new RuntimeException(e);
         }
     }
 
-    @Override
-    public boolean matches(CharSequence rawPassword, String encodedPassword) {
-        return encode(rawPassword).equals(encodedPassword);
+    private static class EncodedHash {
+
+        final int iterations;
+        final byte[] salt;
+        final byte[] hash;
+
+        EncodedHash(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        /**
+         * Returns null for a malformed hash.
+         */
+        static EncodedHash parse(String encodedPassword) {
+            String[] parts = encodedPassword.substring(PREFIX.length()).split("\\$");
+            if (parts.length != 3 || !parts[0].startsWith(ITERATIONS_PREFIX)) {
+                return null;
+            }
+            try {
+                int iterations = Integer.parseInt(parts[0].substring(ITERATIONS_PREFIX.length()));
+                byte[] salt = Base64.getDecoder().decode(parts[1]);
+                byte[] hash = Base64.getDecoder().decode(parts[2]);
+                if (iterations <= 0 || hash.length == 0) {
+                    return null;
+                }
+                return new EncodedHash(iterations, salt, hash);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
     }
 }
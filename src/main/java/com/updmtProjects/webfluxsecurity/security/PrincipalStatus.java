@@ -0,0 +1,24 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.updmtProjects.webfluxsecurity.entity.User;
+import com.updmtProjects.webfluxsecurity.entity.UserRole;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PrincipalStatus {
+
+    private final boolean enabled;
+    private final boolean deleted;
+    private final UserRole role;
+    private final int tokenVersion;
+
+    public static PrincipalStatus from(User user) {
+        return new PrincipalStatus(user.isEnabled(), user.isDeleted(), user.getRole(), user.getTokenVersion());
+    }
+
+    public boolean isActive() {
+        return enabled && !deleted;
+    }
+}
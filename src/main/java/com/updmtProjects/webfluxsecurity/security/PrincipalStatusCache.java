@@ -0,0 +1,57 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of userId -> enabled/deleted/role used by {@link AuthenticationManager},
+ * so an authenticated request does not need a database round trip. Concurrent requests
+ * for the same user share one load. Entries are invalidated on user writes.
+ * Hit ratio and average load latency are published as security.principal-cache.* metrics.
+ */
+@Component
+public class PrincipalStatusCache {
+
+    private final AsyncCache<Long, PrincipalStatus> cache;
+
+    public PrincipalStatusCache(@Value("${security.principal-cache.ttl}") Duration ttl,
+                                @Value("${security.principal-cache.max-size}") long maxSize,
+                                MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+        Gauge.builder("security.principal-cache.hit-ratio", this, PrincipalStatusCache::hitRate)
+                .description("Share of principal status lookups served from the cache")
+                .register(meterRegistry);
+        Gauge.builder("security.principal-cache.load-latency", this, PrincipalStatusCache::averageLoadPenaltyNanos)
+                .description("Average time to load a principal status from the database")
+                .baseUnit("nanoseconds")
+                .register(meterRegistry);
+    }
+
+    public Mono<PrincipalStatus> get(Long userId, Function<Long, Mono<PrincipalStatus>> loader) {
+        return Mono.fromFuture(cache.get(userId, (id, executor) -> loader.apply(id).toFuture()), true);
+    }
+
+    public void invalidate(Long userId) {
+        cache.synchronous().invalidate(userId);
+    }
+
+    public double hitRate() {
+        return cache.synchronous().stats().hitRate();
+    }
+
+    public double averageLoadPenaltyNanos() {
+        return cache.synchronous().stats().averageLoadPenalty();
+    }
+}
@@ -0,0 +1,11 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.publisher.Mono;
+
+public interface ReactivePasswordEncoder extends PasswordEncoder {
+
+    Mono<String> encodeAsync(CharSequence rawPassword);
+
+    Mono<Boolean> matchesAsync(CharSequence rawPassword, String encodedPassword);
+}
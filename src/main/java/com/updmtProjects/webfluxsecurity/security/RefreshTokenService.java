@@ -0,0 +1,103 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.updmtProjects.webfluxsecurity.entity.RefreshToken;
+import com.updmtProjects.webfluxsecurity.exception.AuthException;
+import com.updmtProjects.webfluxsecurity.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+
+/**
+ * Opaque, single-use refresh tokens. Only the SHA-256 of a token is stored; presenting an already
+ * used token is treated as theft and revokes every refresh token of the user.
+ */
+@Slf4j
+@Component
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${jwt.refresh-expiration}")
+    private Long refreshExpirationInSeconds;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+    }
+
+    public Mono<TokenDetails> issue(Long userId) {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusSeconds(refreshExpirationInSeconds);
+        RefreshToken refreshToken = RefreshToken.builder()
+                .tokenHash(hash(token))
+                .userId(userId)
+                .expiresAt(expiresAt)
+                .createdAt(now)
+                .build();
+
+        return refreshTokenRepository.save(refreshToken)
+                .map(saved -> TokenDetails.builder()
+                        .userId(userId)
+                        .refreshToken(token)
+                        .refreshExpiresAt(Date.from(expiresAt.atZone(ZoneId.systemDefault()).toInstant()))
+                        .build());
+    }
+
+    /**
+     * Marks the refresh token as used and returns the id of its user.
+     */
+    public Mono<Long> consume(String token) {
+        if (token == null) {
+            return Mono.error(new AuthException("Invalid refresh token", "INVALID_REFRESH_TOKEN"));
+        }
+        return refreshTokenRepository.findByTokenHash(hash(token))
+                .switchIfEmpty(Mono.error(new AuthException("Invalid refresh token", "INVALID_REFRESH_TOKEN")))
+                .flatMap(refreshToken -> {
+                    if (refreshToken.getExpiresAt().isBefore(LocalDateTime.now())) {
+                        return Mono.error(new AuthException("Refresh token expired", "REFRESH_TOKEN_EXPIRED"));
+                    }
+                    return refreshTokenRepository.revokeById(refreshToken.getId())
+                            .flatMap(updated -> updated == 1
+                                    ? Mono.just(refreshToken.getUserId())
+                                    : revokeReused(refreshToken));
+                });
+    }
+
+    public Mono<Void> revoke(String token) {
+        return refreshTokenRepository.findByTokenHash(hash(token))
+                .flatMap(refreshToken -> refreshTokenRepository.revokeById(refreshToken.getId()))
+                .then();
+    }
+
+    private Mono<Long> revokeReused(RefreshToken refreshToken) {
+        log.warn("In consume - reuse of refresh token {} detected for user {}", refreshToken.getId(), refreshToken.getUserId());
+        return refreshTokenRepository.revokeAllByUserId(refreshToken.getUserId())
+                .then(Mono.error(new AuthException("Refresh token already used", "REFRESH_TOKEN_REUSED")));
+    }
+
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -3,58 +3,65 @@ package com.updmtProjects.webfluxsecurity.security;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.exception.AuthException;
 import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class SecurityService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String TOKEN_VERSION_CLAIM = "token_version";
+
     @Value("${jwt.expiration}")
     private Integer expirationInSeconds;
     @Value("${jwt.issuer}")
     private String issuer;
 
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
+    private final ReactivePasswordEncoder passwordEncoder;
+    private final JwtKeyManager jwtKeyManager;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
 
-    private TokenDetails generateToken(User user) {
+    private Mono<TokenDetails> generateToken(User user) {
         Map<String, Object> claims = new HashMap<>() {{
             put("role", user.getRole());
             put("username", user.getUsername());
+            put(TOKEN_VERSION_CLAIM, user.getTokenVersion());
         }};
-        return generateToken(claims, user.getId().toString());
+        return jwtKeyManager.signingKey()
+                .map(signingKey -> generateToken(claims, user.getId().toString(), signingKey));
     }
 
-    private TokenDetails generateToken(Map<String, Object> claims, String subject) {
+    private TokenDetails generateToken(Map<String, Object> claims, String subject, SigningKey signingKey) {
         long expirationTimeInMillis = expirationInSeconds * 1000L;
         Date expirationDate = new Date(new Date().getTime() + expirationTimeInMillis);
-        return generateToken(expirationDate, claims, subject);
+        return generateToken(expirationDate, claims, subject, signingKey);
     }
 
-    private TokenDetails generateToken(Date expirationDate, Map<String, Object> claims, String subject) {
+    private TokenDetails generateToken(Date expirationDate, Map<String, Object> claims, String subject, SigningKey signingKey) {
         Date createdDate = new Date();
         String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                 .setClaims(claims)
                 .setIssuer(issuer)
                 .setSubject(subject)
                 .setIssuedAt(createdDate)
                 .setId(UUID.randomUUID().toString())
                 .setExpiration(expirationDate)
-                .signWith(SignatureAlgorithm.HS256, Base64.getEncoder().encodeToString(secret.getBytes()))
+                .signWith(SignatureAlgorithm.ES256, signingKey.getPrivateKey())
                 .compact();
 
         return TokenDetails.builder()
@@ -71,14 +78,58 @@ public class SecurityService {
                         return Mono.error(new AuthException("Account disabled", "USER_ACCOUNT_DISABLED"));
                     }
 
-                    if (!passwordEncoder.matches(password, user.getPassword())) {
-                        return Mono.error(new AuthException("Invalid password", "INVALID_PASSWORD"));
+                    if (user.isDeleted()) {
+                        return Mono.error(new AuthException("Account deleted", "USER_ACCOUNT_DELETED"));
                     }
 
-                    return Mono.just(generateToken(user).toBuilder()
-                            .userId(user.getId())
-                            .build());
+                    return passwordEncoder.matchesAsync(password, user.getPassword())
+                            .flatMap(matches -> {
+                                if (!matches) {
+                                    return Mono.error(new AuthException("Invalid password", "INVALID_PASSWORD"));
+                                }
+
+                                if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+                                    upgradePasswordHash(user, password);
+                                }
+                                return issueTokens(user);
+                            });
                 })
                 .switchIfEmpty(Mono.error(new AuthException("Invalid username", "INVALID_USERNAME")));
     }
+
+    public Mono<TokenDetails> refresh(String refreshToken) {
+        return refreshTokenService.consume(refreshToken)
+                .flatMap(userService::getUserById)
+                .flatMap(user -> {
+                    if (!user.isEnabled() || user.isDeleted()) {
+                        return Mono.error(new AuthException("Account disabled", "USER_ACCOUNT_DISABLED"));
+                    }
+                    return issueTokens(user);
+                });
+    }
+
+    public Mono<Void> logout(CustomPrincipal principal, String refreshToken) {
+        Mono<Void> revokeRefreshToken = refreshToken == null ? Mono.empty() : refreshTokenService.revoke(refreshToken);
+        return tokenRevocationService.revoke(principal.getTokenId(), principal.getTokenExpiresAt())
+                .then(revokeRefreshToken);
+    }
+
+    /**
+     * Rehashes the just verified password with the current format and cost in the background,
+     * so the login itself does not wait for a second hash.
+     */
+    private void upgradePasswordHash(User user, String password) {
+        passwordEncoder.encodeAsync(password)
+                .flatMap(encodedPassword -> userService.upgradePasswordHash(user.getId(), user.getPassword(), encodedPassword))
+                .subscribe(null, e -> log.warn("In upgradePasswordHash - failed to rehash password of user {}: {}", user.getId(), e.getMessage()));
+    }
+
+    private Mono<TokenDetails> issueTokens(User user) {
+        return generateToken(user)
+                .zipWith(refreshTokenService.issue(user.getId()), (accessToken, refreshToken) -> accessToken.toBuilder()
+                        .userId(user.getId())
+                        .refreshToken(refreshToken.getRefreshToken())
+                        .refreshExpiresAt(refreshToken.getRefreshExpiresAt())
+                        .build());
+    }
 }
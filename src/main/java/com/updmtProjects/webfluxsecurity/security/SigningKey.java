@@ -0,0 +1,14 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.PrivateKey;
+
+@Getter
+@AllArgsConstructor
+public class SigningKey {
+
+    private final String kid;
+    private final PrivateKey privateKey;
+}
@@ -0,0 +1,85 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate sliding-window counter with an exact count per key, kept in a bounded Caffeine map.
+ * Each counter packs window id (32 bits), current count (16 bits) and previous count (16 bits)
+ * into one long updated with CAS. When more distinct keys show up than the map holds, the rarely
+ * seen ones are evicted and start over; a flood of distinct keys can therefore only make the limiter
+ * more lenient, it never locks out a key that did not reach the limit itself.
+ */
+public class SlidingWindowRateLimiter {
+
+    private static final long COUNT_MASK = 0xFFFFL;
+    private static final long WINDOW_MASK = 0xFFFFFFFFL;
+
+    private final Cache<String, AtomicLong> counters;
+    private final long windowMillis;
+    private final int limit;
+
+    public SlidingWindowRateLimiter(long maxKeys, Duration window, int limit) {
+        this.windowMillis = window.toMillis();
+        this.limit = Math.min(limit, (int) COUNT_MASK);
+        // a counter idle for two windows has nothing left to count
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(window.multipliedBy(2))
+                .build();
+    }
+
+    /**
+     * Registers an attempt for the key and returns false without registering it
+     * when the key has already reached the limit within the sliding window.
+     */
+    public boolean tryAcquire(String key) {
+        long now = System.currentTimeMillis();
+        long window = now / windowMillis;
+        double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+
+        AtomicLong counter = counters.get(key, k -> new AtomicLong());
+        long state;
+        long updated;
+        do {
+            state = counter.get();
+            long rolled = roll(state, window);
+            if (current(rolled) + previous(rolled) * previousWeight >= limit) {
+                return false;
+            }
+            updated = pack(window, current(rolled) + 1, previous(rolled));
+        } while (!counter.compareAndSet(state, updated));
+        return true;
+    }
+
+    public long windowSeconds() {
+        return windowMillis / 1000;
+    }
+
+    private static long roll(long state, long window) {
+        long stateWindow = state >>> 32;
+        long currentWindow = window & WINDOW_MASK;
+        if (stateWindow == currentWindow) {
+            return state;
+        }
+        if (stateWindow == ((currentWindow - 1) & WINDOW_MASK)) {
+            return pack(window, 0, current(state));
+        }
+        return pack(window, 0, 0);
+    }
+
+    private static long pack(long window, long current, long previous) {
+        return ((window & WINDOW_MASK) << 32) | (current << 16) | previous;
+    }
+
+    private static long current(long state) {
+        return (state >>> 16) & COUNT_MASK;
+    }
+
+    private static long previous(long state) {
+        return state & COUNT_MASK;
+    }
+}
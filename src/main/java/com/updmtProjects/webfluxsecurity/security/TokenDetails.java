@@ -17,4 +17,6 @@ public class TokenDetails {
     private String token;
     private Date issuedAt;
     private Date expiresAt;
+    private String refreshToken;
+    private Date refreshExpiresAt;
 }
@@ -0,0 +1,138 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.updmtProjects.webfluxsecurity.entity.RevokedToken;
+import com.updmtProjects.webfluxsecurity.repository.RevokedTokenRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Revoked access token ids are stored in the revoked_tokens table until the token expires
+ * and mirrored into an in-memory {@link JtiBloomFilter}. The filter is fed with rows revoked
+ * on other nodes by a periodic delta sync and rebuilt from scratch from time to time so
+ * expired ids do not pile up. Ids revoked on this node while a rebuild is running go into
+ * both filters, so the swap cannot drop them. Revoking an already revoked id is a no-op.
+ */
+@Slf4j
+@Component
+public class TokenRevocationService {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+    private final long expectedRevocations;
+    private final double falsePositiveRate;
+    private final Duration syncInterval;
+    private final Duration rebuildInterval;
+
+    private volatile JtiBloomFilter filter;
+    private volatile JtiBloomFilter rebuilding;
+    private volatile LocalDateTime lastSync;
+    private volatile LocalDateTime lastRebuild;
+    private Disposable syncTask;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  R2dbcEntityTemplate r2dbcEntityTemplate,
+                                  @Value("${security.revocation.expected-revocations}") long expectedRevocations,
+                                  @Value("${security.revocation.false-positive-rate}") double falsePositiveRate,
+                                  @Value("${security.revocation.sync-interval}") Duration syncInterval,
+                                  @Value("${security.revocation.rebuild-interval}") Duration rebuildInterval) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.syncInterval = syncInterval;
+        this.rebuildInterval = rebuildInterval;
+        this.filter = new JtiBloomFilter(expectedRevocations, falsePositiveRate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSync() {
+        syncTask = Flux.interval(Duration.ZERO, syncInterval)
+                .concatMap(tick -> sync()
+                        .onErrorResume(e -> {
+                            log.error("In startSync - failed to sync revoked tokens: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopSync() {
+        if (syncTask != null) {
+            syncTask.dispose();
+        }
+    }
+
+    /**
+     * Cheap in-memory check; false means the token is definitely not revoked.
+     */
+    public boolean mightBeRevoked(String jti) {
+        return jti != null && filter.mightContain(jti);
+    }
+
+    public Mono<Boolean> isRevoked(String jti) {
+        if (!mightBeRevoked(jti)) {
+            return Mono.just(false);
+        }
+        return revokedTokenRepository.existsById(jti);
+    }
+
+    public Mono<Void> revoke(String jti, Date expiresAt) {
+        RevokedToken revokedToken = RevokedToken.builder()
+                .jti(jti)
+                .expiresAt(LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()))
+                .revokedAt(LocalDateTime.now())
+                .build();
+        return r2dbcEntityTemplate.insert(revokedToken)
+                .then()
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .doOnSuccess(ignored -> markRevoked(jti));
+    }
+
+    private void markRevoked(String jti) {
+        // the filter being rebuilt first: once it is swapped in, filter already points to it
+        JtiBloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(jti);
+        }
+        filter.put(jti);
+    }
+
+    private Mono<Void> sync() {
+        LocalDateTime syncStartedAt = LocalDateTime.now();
+        if (lastRebuild == null || lastRebuild.isBefore(syncStartedAt.minus(rebuildInterval))) {
+            return rebuild(syncStartedAt);
+        }
+        JtiBloomFilter current = filter;
+        return revokedTokenRepository.findByRevokedAtAfter(lastSync.minus(syncInterval))
+                .doOnNext(token -> current.put(token.getJti()))
+                .then(Mono.fromRunnable(() -> lastSync = syncStartedAt));
+    }
+
+    private Mono<Void> rebuild(LocalDateTime rebuildStartedAt) {
+        JtiBloomFilter rebuilt = new JtiBloomFilter(expectedRevocations, falsePositiveRate);
+        return revokedTokenRepository.deleteExpiredBefore(rebuildStartedAt)
+                .thenMany(revokedTokenRepository.findByExpiresAtAfter(rebuildStartedAt))
+                .doOnNext(token -> rebuilt.put(token.getJti()))
+                .then(Mono.fromRunnable(() -> {
+                    filter = rebuilt;
+                    lastSync = rebuildStartedAt;
+                    lastRebuild = rebuildStartedAt;
+                }))
+                .doFirst(() -> rebuilding = rebuilt)
+                .doFinally(signal -> rebuilding = null);
+    }
+}
@@ -0,0 +1,119 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory userId -> token_version and active (enabled and not deleted) map. Tokens carry the version
+ * they were issued with, and UserServiceImpl bumps the version on role change or delete, so the
+ * authentication hot path can reject stale tokens and inactive users without any I/O. Changes made by
+ * other nodes or directly in the database are picked up by a periodic delta sync on users.updated_at,
+ * which the database sets on every row change; the sync keeps its watermark in database time as well.
+ * Only users whose state differs from a new user's (version 0, active) are kept, so the map grows with
+ * the users that were ever revoked or disabled rather than with all of them.
+ */
+@Slf4j
+@Component
+public class TokenVersionRegistry {
+
+    private static final TokenState INITIAL_STATE = new TokenState(0, true);
+    private static final String SELECT_ALL_STATES = "SELECT id, token_version, enabled, deleted FROM users " +
+            "WHERE token_version > 0 OR enabled = FALSE OR deleted = TRUE";
+    private static final String SELECT_UPDATED_STATES = "SELECT id, token_version, enabled, deleted FROM users WHERE updated_at >= :since";
+    private static final String SELECT_DATABASE_TIME = "SELECT CURRENT_TIMESTAMP AS database_time";
+
+    private final DatabaseClient databaseClient;
+    private final Duration syncInterval;
+    private final Map<Long, TokenState> states = new ConcurrentHashMap<>();
+
+    // database time the last sync started at
+    private volatile LocalDateTime lastSync;
+    private volatile boolean loaded;
+    private Disposable syncTask;
+
+    public TokenVersionRegistry(DatabaseClient databaseClient,
+                                @Value("${security.token-version.sync-interval}") Duration syncInterval) {
+        this.databaseClient = databaseClient;
+        this.syncInterval = syncInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSync() {
+        syncTask = Flux.interval(Duration.ZERO, syncInterval)
+                .concatMap(tick -> sync()
+                        .onErrorResume(e -> {
+                            log.error("In startSync - failed to sync token versions: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopSync() {
+        if (syncTask != null) {
+            syncTask.dispose();
+        }
+    }
+
+    /**
+     * @return the latest known token state of the user, or null until the first sync has loaded the users
+     */
+    public TokenState currentState(Long userId) {
+        TokenState state = states.get(userId);
+        return state != null || !loaded ? state : INITIAL_STATE;
+    }
+
+    /**
+     * A higher version always wins; at the same version the latest report wins, so enabling
+     * or disabling a user without a version bump is still picked up.
+     */
+    public void update(Long userId, int version, boolean active) {
+        TokenState reported = new TokenState(version, active);
+        states.compute(userId, (id, known) -> {
+            TokenState merged = known == null || reported.version() >= known.version() ? reported : known;
+            return merged.equals(INITIAL_STATE) ? null : merged;
+        });
+    }
+
+    private Mono<Void> sync() {
+        return databaseClient.sql(SELECT_DATABASE_TIME)
+                .map(row -> row.get("database_time", LocalDateTime.class))
+                .one()
+                .flatMap(syncStartedAt -> {
+                    DatabaseClient.GenericExecuteSpec query = lastSync == null
+                            ? databaseClient.sql(SELECT_ALL_STATES)
+                            // overlap the previous sync: a transaction committed after it started can carry an
+                            // earlier updated_at, which also has second precision only
+                            : databaseClient.sql(SELECT_UPDATED_STATES).bind("since", lastSync.minus(syncInterval));
+                    return query
+                            .map(row -> {
+                                boolean active = Boolean.TRUE.equals(row.get("enabled", Boolean.class))
+                                        && !Boolean.TRUE.equals(row.get("deleted", Boolean.class));
+                                return Map.entry(row.get("id", Long.class), new TokenState(row.get("token_version", Integer.class), active));
+                            })
+                            .all()
+                            .doOnNext(entry -> update(entry.getKey(), entry.getValue().version(), entry.getValue().active()))
+                            .then(Mono.fromRunnable(() -> {
+                                lastSync = syncStartedAt;
+                                loaded = true;
+                            }));
+                })
+                .then();
+    }
+
+    public record TokenState(int version, boolean active) {
+    }
+}
@@ -1,26 +1,42 @@
 package com.updmtProjects.webfluxsecurity.security;
 
+import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import io.jsonwebtoken.Claims;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class UserAuthenticationBearer {
 
+    private static final Map<String, List<SimpleGrantedAuthority>> AUTHORITIES_BY_ROLE = Arrays.stream(UserRole.values())
+            .collect(Collectors.toUnmodifiableMap(Enum::name, role -> List.of(new SimpleGrantedAuthority(role.name()))));
+
     public static Mono<Authentication> create(JwtHandler.VerificationResult verificationResult) {
+        return Mono.just(createAuthentication(verificationResult));
+    }
+
+    public static Authentication createAuthentication(JwtHandler.VerificationResult verificationResult) {
         Claims claims = verificationResult.claims;
         String subject = claims.getSubject();
 
         String role = claims.get("role", String.class);
         String username = claims.get("username", String.class);
+        Integer tokenVersion = claims.get(SecurityService.TOKEN_VERSION_CLAIM, Integer.class);
 
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(role));
+        List<SimpleGrantedAuthority> authorities = AUTHORITIES_BY_ROLE.get(role);
+        if (authorities == null) {
+            authorities = List.of(new SimpleGrantedAuthority(role));
+        }
 
         Long principalId = Long.parseLong(subject);
-        CustomPrincipal principal = new CustomPrincipal(principalId, username, role);
-        return Mono.justOrEmpty(new UsernamePasswordAuthenticationToken(principal, null, authorities));
+        CustomPrincipal principal = new CustomPrincipal(principalId, username, role,
+                tokenVersion == null ? 0 : tokenVersion, claims.getId(), claims.getExpiration());
+        return new UsernamePasswordAuthenticationToken(principal, null, authorities);
     }
 }
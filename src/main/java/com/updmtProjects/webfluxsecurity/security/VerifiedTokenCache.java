@@ -0,0 +1,140 @@
+package com.updmtProjects.webfluxsecurity.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Caches already verified tokens, keyed by the SHA-256 digest of the token,
+ * so a client reusing the same token does not pay for signature verification
+ * and claims parsing on every request. Each entry is evicted at the token's exp.
+ * A lookup allocates only the digest key: the digest and its buffers are reused per thread.
+ * The hit ratio is published as the security.token-cache.hit-ratio metric.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int DIGEST_LENGTH = 32;
+
+    private static final ThreadLocal<DigestState> DIGEST_STATE = ThreadLocal.withInitial(DigestState::new);
+
+    private final Cache<TokenDigest, JwtHandler.VerificationResult> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size}") long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+        Gauge.builder("security.token-cache.hit-ratio", this, VerifiedTokenCache::hitRate)
+                .description("Share of token verifications served from the cache")
+                .register(meterRegistry);
+    }
+
+    public JwtHandler.VerificationResult get(String token, Function<String, JwtHandler.VerificationResult> verifier) {
+        return get(token, 0, verifier);
+    }
+
+    /**
+     * Looks up the token that starts at the offset of the source (e.g. an Authorization header value),
+     * so a cache hit does not have to cut the token out of it.
+     */
+    public JwtHandler.VerificationResult get(String source, int offset, Function<String, JwtHandler.VerificationResult> verifier) {
+        TokenDigest key = DIGEST_STATE.get().digest(source, offset);
+        JwtHandler.VerificationResult cached = cache.asMap().get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return cache.get(key, digest -> verifier.apply(source.substring(offset)));
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public double hitRate() {
+        long hitCount = hits.sum();
+        long requestCount = hitCount + misses.sum();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    private record TokenDigest(long first, long second, long third, long fourth) {
+    }
+
+    private static class DigestState {
+
+        private final MessageDigest messageDigest;
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private final ByteBuffer digestBuffer = ByteBuffer.wrap(digest);
+        private byte[] tokenBytes = new byte[1024];
+
+        DigestState() {
+            try {
+                messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        TokenDigest digest(String source, int offset) {
+            int length = source.length() - offset;
+            if (tokenBytes.length < length) {
+                tokenBytes = new byte[length];
+            }
+            // a valid token is base64url and dots, so every char fits into one byte
+            for (int i = 0; i < length; i++) {
+                char c = source.charAt(offset + i);
+                if (c > 0x7F) {
+                    throw new IllegalArgumentException("Token contains non-ASCII characters");
+                }
+                tokenBytes[i] = (byte) c;
+            }
+            messageDigest.update(tokenBytes, 0, length);
+            try {
+                messageDigest.digest(digest, 0, DIGEST_LENGTH);
+            } catch (DigestException e) {
+                throw new RuntimeException(e);
+            }
+            return new TokenDigest(digestBuffer.getLong(0), digestBuffer.getLong(8),
+                    digestBuffer.getLong(16), digestBuffer.getLong(24));
+        }
+    }
+
+    private static class TokenExpiry implements Expiry<TokenDigest, JwtHandler.VerificationResult> {
+
+        @Override
+        public long expireAfterCreate(TokenDigest key, JwtHandler.VerificationResult value, long currentTime) {
+            long millisLeft = value.claims.getExpiration().getTime() - System.currentTimeMillis();
+            return Math.max(0L, millisLeft) * 1_000_000L;
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest key, JwtHandler.VerificationResult value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest key, JwtHandler.VerificationResult value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
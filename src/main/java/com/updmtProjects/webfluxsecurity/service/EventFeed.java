@@ -0,0 +1,67 @@
+package com.updmtProjects.webfluxsecurity.service;
+
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live events per user, published once the transaction that registered them has committed. Each user has
+ * one multicast sink while somebody listens; every subscriber gets its own bounded buffer, and a subscriber
+ * that lets it overflow is disconnected instead of slowing down the others. The feed is node-local: it only
+ * carries events registered on this node, clients resume anything they missed with Last-Event-ID.
+ */
+@Slf4j
+@Component
+public class EventFeed {
+
+    private final ConcurrentHashMap<Long, UserFeed> feeds = new ConcurrentHashMap<>();
+    private final int bufferSize;
+
+    public EventFeed(@Value("${events.feed.buffer-size}") int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public Flux<EventDto> subscribe(Long userId) {
+        return Flux.defer(() -> {
+            // the subscriber count only changes inside compute, so a feed is never dropped while joined
+            UserFeed feed = feeds.compute(userId, (id, existing) -> {
+                UserFeed joined = existing != null ? existing : new UserFeed();
+                joined.subscribers++;
+                return joined;
+            });
+            return feed.sink.asFlux()
+                    .doFinally(signal -> feeds.computeIfPresent(userId, (id, existing) -> --existing.subscribers == 0 ? null : existing));
+        }).onBackpressureBuffer(bufferSize,
+                dropped -> log.warn("In subscribe - event feed of user {} overflowed, disconnecting the subscriber", userId),
+                BufferOverflowStrategy.ERROR);
+    }
+
+    public boolean hasSubscribers(Long userId) {
+        return feeds.containsKey(userId);
+    }
+
+    public void publish(Long userId, EventDto event) {
+        UserFeed feed = feeds.get(userId);
+        if (feed == null) {
+            return;
+        }
+        // emission has to be serialized, uploads of one user can commit concurrently
+        synchronized (feed) {
+            feed.sink.tryEmitNext(event);
+        }
+    }
+
+    private static final class UserFeed {
+
+        // a subscriber without demand misses the event rather than holding up the others; the buffer in
+        // front of each subscriber keeps that from happening while it keeps up
+        private final Sinks.Many<EventDto> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
@@ -1,26 +1,36 @@
 package com.updmtProjects.webfluxsecurity.service;
 
 import com.updmtProjects.webfluxsecurity.dto.EventDto;
-import com.updmtProjects.webfluxsecurity.entity.Event;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
 import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
-import com.updmtProjects.webfluxsecurity.mapper.EventMapper;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
 import com.updmtProjects.webfluxsecurity.service.EventService.EventService;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import com.updmtProjects.webfluxsecurity.util.RoleConstants;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service
 @RequiredArgsConstructor
 public class EventManagementService {
 
+    @Value("${pagination.max-limit}")
+    private int maxPageLimit;
+    @Value("${events.feed.replay-page-size}")
+    private int feedReplayPageSize;
+    @Value("${events.feed.heartbeat-interval}")
+    private Duration feedHeartbeatInterval;
+
     private final EventService eventService;
-    private final EventMapper eventMapper;
-    private final FileManagementService fileManagementService;
+    private final EventFeed eventFeed;
 
     public Mono<EventDto> getEventDependingOnUserRole(Authentication authentication, Long eventId) {
         CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
@@ -35,8 +45,7 @@ public class EventManagementService {
     }
 
     public Mono<EventDto> getEventById(Long id) {
-        return eventService.getEventById(id)
-                .flatMap(this::mapEventToDtoWithFile);
+        return eventService.getEventWithFileById(id);
     }
 
     public Mono<EventDto> getEventByUserIdAndEventId(Long userId, Long eventId) {
@@ -48,14 +57,26 @@ public class EventManagementService {
                         return Mono.error(new CustomAccessDeniedException("Access Denied. Event belongs to another user"));
                     }
                     // Если событие принадлежит пользователю, возвращаем DTO
-                    return mapEventToDtoWithFile(event);
+                    return eventService.getEventWithFileById(eventId);
                 })
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("Event not found")));
     }
 
+    // события читаются вместе с файлами одним запросом
     public Flux<EventDto> getAllEvents() {
-        return eventService.getAllEvents()
-                .flatMap(this::mapEventToDtoWithFile);
+        return eventService.getAllEventsWithFile();
+    }
+
+    public Mono<KeysetPage<EventDto>> getEventsPage(String cursor, int limit) {
+        return Mono.defer(() -> {
+            long afterId = KeysetPage.afterId(cursor);
+            int pageSize = KeysetPage.pageSize(limit, maxPageLimit);
+            return eventService.getEventsWithFilePage(afterId, pageSize + 1)
+                    .collectList()
+                    .flatMap(events -> afterId == 0 && events.isEmpty()
+                            ? Mono.error(new CustomNotFoundException("Events not found"))
+                            : Mono.just(KeysetPage.of(events, pageSize, EventDto::getId)));
+        });
     }
 
     public Flux<EventDto> getUserEventsDependingOnRole(Authentication authentication, Long userId) {
@@ -69,19 +90,85 @@ public class EventManagementService {
         return getEventsByUserId(userId);
     }
 
+    public Mono<KeysetPage<EventDto>> getUserEventsPageDependingOnRole(Authentication authentication, Long userId, String cursor, int limit) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        Long authorisedUserId = customPrincipal.getId();
+        String userRole = customPrincipal.getRole();
+
+        if (!authorisedUserId.equals(userId) && RoleConstants.USER.equals(userRole)) {
+            return Mono.error(new CustomAccessDeniedException("You cannot get other user events"));
+        }
+        return Mono.defer(() -> {
+            long afterId = KeysetPage.afterId(cursor);
+            int pageSize = KeysetPage.pageSize(limit, maxPageLimit);
+            return eventService.findWithFileByUserIdPage(userId, afterId, pageSize + 1)
+                    .collectList()
+                    .flatMap(events -> afterId == 0 && events.isEmpty()
+                            ? Mono.error(new CustomNotFoundException("No files found for user " + userId))
+                            : Mono.just(KeysetPage.of(events, pageSize, EventDto::getId)));
+        });
+    }
+
+    /**
+     * New events of the user as they are registered, as server-sent events with the event id as SSE id.
+     * With lastEventId the events registered after it are replayed first, page by page until a short page
+     * shows the replay has caught up. The live feed is joined before the replay is read, so nothing
+     * committed in between is lost; live events the replay already delivered are skipped.
+     * The live part only carries events registered on this node, see {@link EventFeed}: with several nodes
+     * the client gets the events registered on other nodes when it reconnects with Last-Event-ID.
+     */
+    public Flux<ServerSentEvent<EventDto>> getUserEventFeed(Authentication authentication, Long userId, Long lastEventId) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        Long authorisedUserId = customPrincipal.getId();
+        String userRole = customPrincipal.getRole();
+
+        if (!authorisedUserId.equals(userId) && RoleConstants.USER.equals(userRole)) {
+            return Flux.error(new CustomAccessDeniedException("You cannot get other user events"));
+        }
+        Flux<EventDto> events = Flux.defer(() -> {
+            if (lastEventId == null) {
+                return eventFeed.subscribe(userId);
+            }
+            AtomicLong lastReplayedId = new AtomicLong(lastEventId);
+            // mergeSequential subscribes to the feed right away and holds its events until the replay is done;
+            // duplicates are dropped after the merge, where every replayed event is seen before any live one.
+            // Live events are not held to id order, uploads of one user can commit out of it
+            return Flux.mergeSequential(
+                            replayAfter(userId, lastEventId).map(event -> new FeedEvent(event, true)),
+                            eventFeed.subscribe(userId).map(event -> new FeedEvent(event, false)))
+                    .filter(feedEvent -> {
+                        if (feedEvent.replayed()) {
+                            lastReplayedId.set(feedEvent.event().getId());
+                            return true;
+                        }
+                        return feedEvent.event().getId() > lastReplayedId.get();
+                    })
+                    .map(FeedEvent::event);
+        });
+
+        return Flux.merge(
+                events.map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.getId()))
+                        .build()),
+                // keeps proxies from closing an idle connection
+                Flux.interval(feedHeartbeatInterval)
+                        .map(tick -> ServerSentEvent.<EventDto>builder().comment("heartbeat").build()));
+    }
+
+    private Flux<EventDto> replayAfter(Long userId, long afterId) {
+        return eventService.findWithFileByUserIdPage(userId, afterId, feedReplayPageSize)
+                .collectList()
+                .flatMapMany(page -> page.size() < feedReplayPageSize
+                        ? Flux.fromIterable(page)
+                        : Flux.concat(Flux.fromIterable(page),
+                                Flux.defer(() -> replayAfter(userId, page.get(page.size() - 1).getId()))));
+    }
+
     public Flux<EventDto> getEventsByUserId(Long userId) {
-        return eventService.findByUserId(userId)
-                .flatMap(this::mapEventToDtoWithFile)
+        return eventService.findWithFileByUserId(userId)
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("No files found for user " + userId)));
     }
 
-    //Переиспользуем метод гетФайл из файлМенеджментСервис
-    private Mono<EventDto> mapEventToDtoWithFile(Event event) {
-        return fileManagementService.getFile(event.getFileId())
-                .map(fileGetDto -> {
-                    EventDto eventDto = eventMapper.map(event);
-                    eventDto.setFileGetDto(fileGetDto);
-                    return eventDto;
-                });
+    private record FeedEvent(EventDto event, boolean replayed) {
     }
 }
@@ -1,13 +1,25 @@
 package com.updmtProjects.webfluxsecurity.service.EventService;
 
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface EventService {
 
     Mono<Event> createEvent(Event event);
+    Mono<Long> createEvents(List<Event> events);
     Mono<Event> getEventById(Long id);
     Flux<Event> getAllEvents();
     Flux<Event> findByUserId(Long userId);
+    Flux<Event> findByUserIds(Collection<Long> userIds);
+    Flux<Event> findByFileIds(Collection<Long> fileIds);
+    Mono<EventDto> getEventWithFileById(Long id);
+    Flux<EventDto> getAllEventsWithFile();
+    Flux<EventDto> findWithFileByUserId(Long userId);
+    Flux<EventDto> getEventsWithFilePage(long afterId, int limit);
+    Flux<EventDto> findWithFileByUserIdPage(Long userId, long afterId, int limit);
 }
@@ -1,5 +1,6 @@
 package com.updmtProjects.webfluxsecurity.service.EventService;
 
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
 import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
 import com.updmtProjects.webfluxsecurity.repository.EventRepository;
@@ -7,6 +8,9 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 public class EventServiceImpl implements EventService {
 
@@ -21,6 +25,11 @@ public class EventServiceImpl implements EventService {
         return eventRepository.save(event);
     }
 
+    @Override
+    public Mono<Long> createEvents(List<Event> events) {
+        return eventRepository.insertAll(events);
+    }
+
     @Override
     public Mono<Event> getEventById(Long id) {
         return eventRepository.findById(id)
@@ -38,4 +47,41 @@ public class EventServiceImpl implements EventService {
         return eventRepository.findByUserId(userId)
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("User with id " + userId + " not found")));
     }
+
+    @Override
+    public Flux<Event> findByUserIds(Collection<Long> userIds) {
+        return eventRepository.findByUserIdInOrderById(userIds);
+    }
+
+    @Override
+    public Flux<Event> findByFileIds(Collection<Long> fileIds) {
+        return eventRepository.findByFileIdInOrderById(fileIds);
+    }
+
+    @Override
+    public Mono<EventDto> getEventWithFileById(Long id) {
+        return eventRepository.findWithFileById(id)
+                .switchIfEmpty(Mono.error(new CustomNotFoundException("Event not found")));
+    }
+
+    @Override
+    public Flux<EventDto> getAllEventsWithFile() {
+        return eventRepository.findAllWithFile()
+                .switchIfEmpty(Mono.error(new CustomNotFoundException("Events not found")));
+    }
+
+    @Override
+    public Flux<EventDto> findWithFileByUserId(Long userId) {
+        return eventRepository.findAllWithFileByUserId(userId);
+    }
+
+    @Override
+    public Flux<EventDto> getEventsWithFilePage(long afterId, int limit) {
+        return eventRepository.findPageWithFile(afterId, limit);
+    }
+
+    @Override
+    public Flux<EventDto> findWithFileByUserIdPage(Long userId, long afterId, int limit) {
+        return eventRepository.findPageWithFileByUserId(userId, afterId, limit);
+    }
 }
@@ -1,27 +1,49 @@
 package com.updmtProjects.webfluxsecurity.service;
 
+import com.updmtProjects.webfluxsecurity.dto.DirectUploadDto;
+import com.updmtProjects.webfluxsecurity.dto.DirectUploadRequestDto;
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.dto.FileDto;
+import com.updmtProjects.webfluxsecurity.dto.FileUploadResultDto;
+import com.updmtProjects.webfluxsecurity.dto.PresignedUrlDto;
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionDto;
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionRequestDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
 import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
+import com.updmtProjects.webfluxsecurity.exception.ApiException;
+import com.updmtProjects.webfluxsecurity.exception.BadRequestException;
+import com.updmtProjects.webfluxsecurity.exception.ConflictException;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
+import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
+import com.updmtProjects.webfluxsecurity.mapper.EventMapper;
 import com.updmtProjects.webfluxsecurity.mapper.FileMapper;
+import com.updmtProjects.webfluxsecurity.mapper.UploadSessionMapper;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
 import com.updmtProjects.webfluxsecurity.service.EventService.EventService;
 import com.updmtProjects.webfluxsecurity.service.FileService.FileService;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import com.updmtProjects.webfluxsecurity.util.RoleConstants;
+import com.updmtProjects.webfluxsecurity.util.StorageKeys;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpRange;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -32,40 +54,230 @@ public class FileManagementService {
 
     @Value("${yandex.bucket-name}")
     private String bucketName;
+    @Value("${files.upload.batch-max-files}")
+    private int batchMaxFiles;
+    @Value("${pagination.max-limit}")
+    private int maxPageLimit;
 
+    private final FileUploadPipeline fileUploadPipeline;
     private final StorageService storageService;
+    private final PresignedUrlCache presignedUrlCache;
+    private final ResumableUploadService resumableUploadService;
     private final FileService fileService;
     private final EventService eventService;
+    private final EventFeed eventFeed;
     private final FileMapper fileMapper;
+    private final EventMapper eventMapper;
+    private final UploadSessionMapper uploadSessionMapper;
+    private final TransactionalOperator transactionalOperator;
 
-    @Transactional
+    /**
+     * The files and events rows are committed in one transaction before the transfer starts, so the row
+     * always exists with its real upload_status; the pipeline moves it to STORED or FAILED.
+     */
     public Mono<FileDto> uploadAndRegisterFile(FilePart filePart, Long userId) {
-        String encodedFileName = URLEncoder.encode(filePart.filename(), StandardCharsets.UTF_8);
-        encodedFileName = encodedFileName.replace("+", "%20");
-        String storageUrl = String.format(storageLink, bucketName, encodedFileName);
+        File file = newPendingFile(filePart.filename(), userId, LocalDateTime.now());
 
+        Function<FileUploadPipeline.StagedContent, Mono<File>> registration = staged -> fileService.createFile(file.toBuilder()
+                        .contentHash(staged.contentHash())
+                        .stagedOn(staged.stagedOn())
+                        .build())
+                .doOnSubscribe(subscription -> log.info("Начало записи данных в таблицу File."))
+                .zipWhen(createdFile -> eventService.createEvent(newEvent(createdFile.getId(), userId)))
+                .as(transactionalOperator::transactional)
+                // после коммита, подписчики ленты не должны увидеть откатившееся событие
+                .doOnNext(registered -> publishEvent(registered.getT2(), registered.getT1()))
+                .map(Tuple2::getT1)
+                .doOnSuccess(createdFile -> log.info("Запись данных в таблицу File завершена."));
+
+        return fileUploadPipeline.upload(filePart, registration)
+                .doOnNext(uploadedFile -> log.info("Статус загрузки файла {} на S3: {}", uploadedFile.getId(), uploadedFile.getUploadStatus()))
+                .map(fileMapper::mapToFileDto);
+    }
+
+    /**
+     * Uploads several files of one request. All files and events rows are written with one multi-row
+     * INSERT each in a single transaction; every file gets its own result, a file that could not be
+     * received does not fail the others.
+     */
+    public Flux<FileUploadResultDto> uploadAndRegisterFiles(Flux<FilePart> fileParts, Long userId) {
+        return fileParts.take(batchMaxFiles + 1L)
+                .collectList()
+                .flatMapMany(parts -> {
+                    if (parts.size() > batchMaxFiles) {
+                        return Flux.error(new BadRequestException("At most " + batchMaxFiles + " files can be uploaded at once", "TOO_MANY_FILES"));
+                    }
+                    return fileUploadPipeline.uploadAll(parts, staged -> registerFiles(staged, userId));
+                })
+                .map(this::mapToUploadResult);
+    }
+
+    private Flux<File> registerFiles(List<FileUploadPipeline.StagedContent> staged, Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<File> files = staged.stream()
+                .map(content -> newPendingFile(content.filePart().filename(), userId, now).toBuilder()
+                        .contentHash(content.contentHash())
+                        .stagedOn(content.stagedOn())
+                        .build())
+                .toList();
+
+        return fileService.createFiles(files)
+                .collectList()
+                .flatMap(createdFiles -> eventService.createEvents(createdFiles.stream()
+                                .map(createdFile -> newEvent(createdFile.getId(), userId))
+                                .toList())
+                        .thenReturn(createdFiles))
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(createdFiles -> log.info("Записано файлов в таблицу File: {}", createdFiles.size()))
+                .flatMap(createdFiles -> publishEvents(createdFiles, userId).thenReturn(createdFiles))
+                .flatMapIterable(Function.identity());
+    }
+
+    private FileUploadResultDto mapToUploadResult(FileUploadPipeline.UploadOutcome outcome) {
+        if (outcome.file() != null) {
+            return FileUploadResultDto.builder()
+                    .fileName(outcome.fileName())
+                    .file(fileMapper.mapToFileDto(outcome.file()))
+                    .build();
+        }
+        String errorCode = outcome.error() instanceof ApiException apiException
+                ? apiException.getErrorCode()
+                : "UPLOAD_FAILED";
+        return FileUploadResultDto.builder()
+                .fileName(outcome.fileName())
+                .errorCode(errorCode)
+                .errorMessage(outcome.error().getMessage())
+                .build();
+    }
+
+    public Mono<UploadSessionDto> createUploadSession(UploadSessionRequestDto request, Long userId) {
+        return resumableUploadService.createSession(request.getFileName(), request.getUploadLength(), StorageKeys.generate(), userId)
+                .map(uploadSessionMapper::map);
+    }
+
+    public Mono<UploadSessionDto> getUploadSession(Long sessionId, Long userId) {
+        return resumableUploadService.getSession(sessionId, userId)
+                .map(uploadSessionMapper::map);
+    }
+
+    public Mono<Long> appendUploadChunk(Long sessionId, Long userId, long offset, long contentLength, Flux<DataBuffer> content) {
+        return resumableUploadService.appendChunk(sessionId, userId, offset, contentLength, content);
+    }
+
+    /**
+     * Completes the session and registers the stored object; the files and events rows are written
+     * in the transaction that marks the session completed.
+     */
+    public Mono<FileDto> completeUploadSession(Long sessionId, Long userId) {
+        // set only when this request registers the file, completing the session again publishes nothing
+        AtomicReference<Tuple2<File, Event>> registered = new AtomicReference<>();
+
+        return resumableUploadService.complete(sessionId, userId, session ->
+                        fileService.createFile(newFile(session.getFileName(), session.getStorageKey(), UploadStatus.STORED, userId, LocalDateTime.now()))
+                                .zipWhen(createdFile -> eventService.createEvent(newEvent(createdFile.getId(), userId)))
+                                .doOnNext(registered::set)
+                                .map(Tuple2::getT1))
+                .doOnNext(fileId -> {
+                    if (registered.get() != null) {
+                        publishEvent(registered.get().getT2(), registered.get().getT1());
+                    }
+                })
+                .flatMap(fileService::getFileById)
+                .map(fileMapper::mapToFileDto);
+    }
+
+    public Mono<Void> abortUploadSession(Long sessionId, Long userId) {
+        return resumableUploadService.abort(sessionId, userId);
+    }
+
+    /**
+     * First step of an upload that bypasses this service: creates the files row in PENDING state and signs
+     * a PUT of its object. The event is registered by {@link #completeDirectUpload} once the object is there.
+     */
+    public Mono<DirectUploadDto> createDirectUpload(DirectUploadRequestDto request, Long userId) {
+        String fileName = request.getFileName();
+        if (fileName == null || fileName.isBlank()) {
+            return Mono.error(new BadRequestException("File name is required", "FILE_NAME_REQUIRED"));
+        }
+        return fileService.createFile(newPendingFile(fileName, userId, LocalDateTime.now()))
+                .flatMap(createdFile -> storageService.presignUpload(createdFile.getStorageKey(), fileName)
+                        .map(presigned -> new DirectUploadDto(createdFile.getId(), presigned.url(), "PUT",
+                                presigned.headers(), presigned.expiresAt())));
+    }
+
+    /**
+     * Checks with a HEAD request that the client has uploaded the object, then marks the file STORED and
+     * registers its event in one transaction. Completing again returns the stored file.
+     */
+    public Mono<FileDto> completeDirectUpload(Long fileId, Long userId) {
+        return fileService.getFileById(fileId)
+                .flatMap(file -> {
+                    if (!userId.equals(file.getUploadedBy())) {
+                        return Mono.error(new CustomAccessDeniedException("Access denied for file ID " + fileId + " for user ID " + userId));
+                    }
+                    if (file.getUploadStatus() == UploadStatus.STORED) {
+                        return Mono.just(file);
+                    }
+                    if (file.getUploadStatus() != UploadStatus.PENDING) {
+                        return Mono.error(new ConflictException("File with ID " + fileId + " is " + file.getUploadStatus(), "FILE_NOT_PENDING"));
+                    }
+                    return storageService.getObjectSize(file.getStorageKey())
+                            .switchIfEmpty(Mono.error(new ConflictException("File with ID " + fileId + " has not been uploaded to the storage",
+                                    "OBJECT_NOT_UPLOADED")))
+                            // only the request that moved the file to STORED registers the event
+                            .flatMap(size -> fileService.completePendingUpload(fileId)
+                                    .filter(Boolean::booleanValue)
+                                    .flatMap(completed -> eventService.createEvent(newEvent(fileId, userId)))
+                                    .as(transactionalOperator::transactional))
+                            .flatMap(createdEvent -> fileService.getFileById(fileId)
+                                    .doOnNext(storedFile -> publishEvent(createdEvent, storedFile)))
+                            .switchIfEmpty(fileService.getFileById(fileId));
+                })
+                .doOnSuccess(file -> log.info("Прямая загрузка файла {} завершена", fileId))
+                .map(fileMapper::mapToFileDto);
+    }
+
+    private void publishEvent(Event event, File file) {
+        EventDto eventDto = eventMapper.map(event);
+        eventDto.setFileGetDto(fileMapper.mapToFileDto(file));
+        eventFeed.publish(event.getUserId(), eventDto);
+    }
+
+    // the batch insert does not return the ids of the events, they are read back only if somebody listens
+    private Mono<Void> publishEvents(List<File> files, Long userId) {
+        if (files.isEmpty() || !eventFeed.hasSubscribers(userId)) {
+            return Mono.empty();
+        }
+        Map<Long, File> filesById = files.stream().collect(Collectors.toMap(File::getId, Function.identity()));
+        return eventService.findByFileIds(filesById.keySet())
+                .doOnNext(event -> publishEvent(event, filesById.get(event.getFileId())))
+                .then();
+    }
+
+    // the display name stays in file_name, the object itself is stored under a generated key
+    private File newPendingFile(String fileName, Long userId, LocalDateTime now) {
+        return newFile(fileName, StorageKeys.generate(), UploadStatus.PENDING, userId, now);
+    }
+
+    private File newFile(String fileName, String storageKey, UploadStatus uploadStatus, Long userId, LocalDateTime now) {
         File file = new File();
-        file.setFileName(filePart.filename());
-        file.setStorageLink(storageUrl);
-        file.setCreated(LocalDateTime.now());
+        file.setFileName(fileName);
+        file.setStorageKey(storageKey);
+        file.setStorageLink(String.format(storageLink, bucketName, storageKey));
+        file.setCreated(now);
+        file.setUploadStatus(uploadStatus);
+        file.setUploadAttempts(1);
+        file.setUploadAttemptedAt(now);
+        file.setUploadedBy(userId);
+        return file;
+    }
 
-        Mono<FileDto> fileUploadDtoMono = fileService.createFile(file)
-                .doOnSubscribe(subscription -> log.info("Начало записи данных в таблицу File."))
-                .map(fileMapper::mapToFileDto)
-                .doOnSuccess(createdFileDto -> log.info("Запись данных в таблицу File завершена."));
-
-        storageService.uploadFile(filePart)
-                .doOnSuccess(result -> log.info("Загрузка файла на S3 завершена."))
-                .subscribe();
-
-        return fileUploadDtoMono.flatMap(createdFileGetDto -> {
-            Event event = new Event();
-            event.setCreated(LocalDateTime.now());
-            event.setFileId(createdFileGetDto.getId());
-            event.setUserId(userId);
-            return eventService.createEvent(event)
-                    .then(Mono.just(createdFileGetDto));
-        });
+    private static Event newEvent(Long fileId, Long userId) {
+        Event event = new Event();
+        event.setCreated(LocalDateTime.now());
+        event.setFileId(fileId);
+        event.setUserId(userId);
+        return event;
     }
 
     public Mono<FileDto> getFileDependingOnUserRole(Authentication authentication, Long fileId) {
@@ -89,6 +301,55 @@ public class FileManagementService {
     //находим все ивенты юзера -> находим определенный файл
     //метод для ROLE_USER
     public Mono<FileDto> getFileByFileIdAndUserId(Long userId, Long fileId) {
+        return getOwnedFile(userId, fileId)
+                .map(fileMapper::mapToFileDto);
+    }
+
+    /**
+     * Streams the stored object of the file after the same access checks as {@link #getFileDependingOnUserRole}.
+     *
+     * @param range the Range header of the request; anything but a single byte range is ignored and
+     *              the whole file is returned
+     */
+    public Mono<StorageService.ObjectContent> getFileContent(Authentication authentication, Long fileId, String range) {
+        return getFileEntityDependingOnUserRole(authentication, fileId)
+                .flatMap(file -> {
+                    if (file.getUploadStatus() != UploadStatus.STORED) {
+                        return Mono.error(new ConflictException("File with ID " + fileId + " is not stored yet", "FILE_NOT_STORED"));
+                    }
+                    return storageService.downloadFile(file.getStorageKey(), singleByteRange(range), file.getFileName());
+                });
+    }
+
+    /**
+     * Presigned GET URL of the stored object, for downloading straight from the object store. Issued after
+     * the same access checks as {@link #getFileDependingOnUserRole} and reused per user until shortly before
+     * it expires.
+     */
+    public Mono<PresignedUrlDto> getDownloadUrl(Authentication authentication, Long fileId) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+
+        return presignedUrlCache.get(fileId, customPrincipal.getId(), () -> getFileEntityDependingOnUserRole(authentication, fileId)
+                        .flatMap(file -> {
+                            if (file.getUploadStatus() != UploadStatus.STORED) {
+                                return Mono.error(new ConflictException("File with ID " + fileId + " is not stored yet", "FILE_NOT_STORED"));
+                            }
+                            return storageService.presignDownload(file.getStorageKey(), file.getFileName());
+                        }))
+                .map(presignedUrl -> new PresignedUrlDto(presignedUrl.url(), presignedUrl.expiresAt()));
+    }
+
+    private Mono<File> getFileEntityDependingOnUserRole(Authentication authentication, Long fileId) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        String userRole = customPrincipal.getRole();
+
+        if (RoleConstants.ADMIN.equals(userRole) || RoleConstants.MODERATOR.equals(userRole)) {
+            return fileService.getFileById(fileId);
+        }
+        return getOwnedFile(customPrincipal.getId(), fileId);
+    }
+
+    private Mono<File> getOwnedFile(Long userId, Long fileId) {
         return fileService.getFileById(fileId)
                 .flatMap(file ->
                         // Принадлежит ли файл запрашивающему пользователю
@@ -96,8 +357,42 @@ public class FileManagementService {
                                 .filter(event -> event.getFileId().equals(fileId))
                                 .next()
                                 .switchIfEmpty(Mono.error(new CustomAccessDeniedException("Access denied for file ID " + fileId + " for user ID " + userId)))
-                                // Если файл принадлежит пользователю, возвращаем его DTO
-                                .flatMap(event -> Mono.just(fileMapper.mapToFileDto(file))));
+                                .thenReturn(file));
+    }
+
+    // S3 serves a single range only, a request for several gets the whole file as RFC 9110 allows
+    private static String singleByteRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        try {
+            return HttpRange.parseRanges(range).size() == 1 ? range.trim() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A page of the user's files in the order they were registered; read together with their events in one query.
+     */
+    public Mono<KeysetPage<FileDto>> getUserFilesPageDependingOnRole(Authentication authentication, Long userId, String cursor, int limit) {
+        CustomPrincipal customPrincipal = (CustomPrincipal) authentication.getPrincipal();
+        Long authorisedUserId = customPrincipal.getId();
+        String userRole = customPrincipal.getRole();
+
+        if (!authorisedUserId.equals(userId) && RoleConstants.USER.equals(userRole)) {
+            return Mono.error(new CustomAccessDeniedException("You cannot get other user files"));
+        }
+        return Mono.defer(() -> {
+            long afterId = KeysetPage.afterId(cursor);
+            int pageSize = KeysetPage.pageSize(limit, maxPageLimit);
+            // the cursor is the id of the event, files are listed through the user's events
+            return eventService.findWithFileByUserIdPage(userId, afterId, pageSize + 1)
+                    .collectList()
+                    .flatMap(events -> afterId == 0 && events.isEmpty()
+                            ? Mono.error(new CustomNotFoundException("No files found for user " + userId))
+                            : Mono.just(KeysetPage.of(events, pageSize, EventDto::getId).map(EventDto::getFileGetDto)));
+        });
     }
 
     public Flux<FileDto> getUserFilesDependingOnRole(Authentication authentication, Long userId) {
@@ -108,8 +403,8 @@ public class FileManagementService {
         if (!authorisedUserId.equals(userId) && RoleConstants.USER.equals(userRole)) {
             return Flux.error(new CustomAccessDeniedException("You cannot get other user files"));
         }
-        return eventService.findByUserId(userId)
-                .flatMap(event -> fileService.getFileById(event.getFileId())
-                        .flatMap(file -> Mono.just(fileMapper.mapToFileDto(file))));
+        // файлы читаются вместе с событиями одним запросом
+        return eventService.findWithFileByUserId(userId)
+                .map(EventDto::getFileGetDto);
     }
 }
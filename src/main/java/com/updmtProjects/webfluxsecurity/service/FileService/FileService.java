@@ -1,10 +1,17 @@
 package com.updmtProjects.webfluxsecurity.service.FileService;
 
 import com.updmtProjects.webfluxsecurity.entity.File;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface FileService {
 
     Mono<File> createFile(File file);
+    Flux<File> createFiles(List<File> files);
     Mono<File> getFileById(Long id);
+    Flux<File> getFilesByIds(Collection<Long> ids);
+    Mono<Boolean> completePendingUpload(Long id);
 }
@@ -5,8 +5,12 @@ import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
 import com.updmtProjects.webfluxsecurity.repository.FileRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 
 @Service
 @Slf4j
@@ -24,10 +28,28 @@ public class FileServiceImpl implements FileService {
                 .doOnSuccess(f -> log.info("Created file: {} ", f.getFileName()));
     }
 
+    @Override
+    public Flux<File> createFiles(List<File> files) {
+        return fileRepository.insertAll(files)
+                .doOnComplete(() -> log.info("Created {} files", files.size()));
+    }
+
     @Override
     public Mono<File> getFileById(Long id) {
         return fileRepository.findById(id)
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("File with ID " + id + " not found")));
     }
 
+    @Override
+    public Flux<File> getFilesByIds(Collection<Long> ids) {
+        return fileRepository.findAllById(ids);
+    }
+
+    @Override
+    public Mono<Boolean> completePendingUpload(Long id) {
+        return fileRepository.completePendingUpload(id)
+                .map(updated -> updated > 0)
+                .doOnSuccess(completed -> log.info("Pending upload of file {} completed: {}", id, completed));
+    }
+
 }
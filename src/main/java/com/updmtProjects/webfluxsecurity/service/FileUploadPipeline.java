@@ -0,0 +1,497 @@
+package com.updmtProjects.webfluxsecurity.service;
+
+import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
+import com.updmtProjects.webfluxsecurity.exception.ServiceUnavailableException;
+import com.updmtProjects.webfluxsecurity.repository.FileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Moves uploaded files to S3 with an explicit upload_status on the files row.
+ * The request body is first spooled to the staging directory, so the transfer can be retried after the
+ * request is gone, and hashed on the way; content that is already stored is not transferred again. The
+ * transfer is awaited for up to inline-wait; a slower one goes on in the background and the response
+ * reports PENDING. Failed transfers, and PENDING ones whose node died, are picked up by the retry worker
+ * of the node that holds the staged file, written as staged_on with the row; an upload whose staged file
+ * is gone is given up. At most max-in-flight transfers run per node,
+ * uploads beyond that are rejected with 503.
+ */
+@Slf4j
+@Service
+public class FileUploadPipeline {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMPORARY_SUFFIX = ".part";
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+    private final StorageService storageService;
+    private final FileRepository fileRepository;
+    private final Path stagingDir;
+    private final String nodeId;
+    private final Duration inlineWait;
+    private final Duration retryInterval;
+    private final Duration staleAfter;
+    private final int maxAttempts;
+    private final int retryBatchSize;
+    private final int batchConcurrency;
+    private final Semaphore inFlight;
+
+    private Disposable retryTask;
+
+    public FileUploadPipeline(StorageService storageService,
+                              FileRepository fileRepository,
+                              @Value("${files.upload.staging-dir}") Path stagingDir,
+                              @Value("${files.upload.node-id}") String nodeId,
+                              @Value("${files.upload.max-in-flight}") int maxInFlight,
+                              @Value("${files.upload.inline-wait}") Duration inlineWait,
+                              @Value("${files.upload.retry-interval}") Duration retryInterval,
+                              @Value("${files.upload.stale-after}") Duration staleAfter,
+                              @Value("${files.upload.max-attempts}") int maxAttempts,
+                              @Value("${files.upload.retry-batch-size}") int retryBatchSize,
+                              @Value("${files.upload.batch-concurrency}") int batchConcurrency) {
+        this.storageService = storageService;
+        this.fileRepository = fileRepository;
+        this.stagingDir = stagingDir;
+        this.nodeId = nodeId.isBlank() ? localHostName() : nodeId;
+        this.inlineWait = inlineWait;
+        this.retryInterval = retryInterval;
+        this.staleAfter = staleAfter;
+        this.maxAttempts = maxAttempts;
+        this.retryBatchSize = retryBatchSize;
+        if (batchConcurrency > maxInFlight) {
+            // a batch could never get its permits, not even on an idle node
+            throw new IllegalArgumentException("files.upload.batch-concurrency " + batchConcurrency
+                    + " exceeds files.upload.max-in-flight " + maxInFlight);
+        }
+        this.batchConcurrency = batchConcurrency;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(stagingDir);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRetrying() {
+        retryTask = Flux.interval(retryInterval, retryInterval)
+                .concatMap(tick -> retryFailedUploads()
+                        .onErrorResume(e -> {
+                            log.error("In startRetrying - failed to retry uploads: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopRetrying() {
+        if (retryTask != null) {
+            retryTask.dispose();
+        }
+    }
+
+    /**
+     * Spools the file, registers it and starts the transfer, or reuses an already stored object
+     * with the same content.
+     *
+     * @param registration creates the files row (and whatever belongs to it) in PENDING state with the
+     *                     SHA-256 and staging node of the content; called once the content has been received
+     *                     completely
+     * @return the registered file with the upload status at the time of the response
+     */
+    public Mono<File> upload(FilePart filePart, Function<StagedContent, Mono<File>> registration) {
+        return stage(filePart)
+                .flatMap(staged -> registration.apply(new StagedContent(filePart, staged.contentHash, nodeId))
+                        .switchIfEmpty(Mono.error(new IllegalStateException("File registration returned no file")))
+                        .doOnError(e -> staged.abandon())
+                        .flatMap(file -> moveToStaging(staged, file)
+                                .onErrorResume(e -> failUnstaged(staged, file, e)))
+                        .flatMap(file -> {
+                            if (!staged.handOver()) {
+                                // abandoned, the content never reached the staging directory
+                                return Mono.just(file);
+                            }
+                            CompletableFuture<File> transfer = reuseOrTransfer(file)
+                                    .doFinally(signal -> inFlight.release())
+                                    .toFuture();
+                            return Mono.fromFuture(transfer, true)
+                                    .timeout(inlineWait, Mono.just(file));
+                        })
+                        .doOnCancel(staged::abandon));
+    }
+
+    /**
+     * Batch variant of {@link #upload}: spools up to batch-concurrency files at once, registers all of them
+     * with a single call and transfers them with the same concurrency, awaiting the transfers for up to
+     * inline-wait in total. The batch takes the in-flight permits for what it spools or transfers at once up
+     * front and keeps them until its transfers are done, so a batch of any size goes through on an idle node;
+     * when the permits are not available the whole batch is rejected with 503. A file that cannot be spooled
+     * is reported in its outcome and not registered; the others go on.
+     *
+     * @param registration creates the files rows in PENDING state for the spooled files and
+     *                     returns them in the same order
+     * @return an outcome per file part, in request order
+     */
+    public Flux<UploadOutcome> uploadAll(List<FilePart> fileParts, Function<List<StagedContent>, Flux<File>> registration) {
+        return Flux.defer(() -> {
+            int permits = Math.min(fileParts.size(), batchConcurrency);
+            if (!inFlight.tryAcquire(permits)) {
+                return Flux.error(new ServiceUnavailableException("Upload capacity exceeded", "UPLOAD_CAPACITY_EXCEEDED"));
+            }
+            AtomicBoolean permitsHeld = new AtomicBoolean(true);
+            Runnable releasePermits = () -> {
+                if (permitsHeld.compareAndSet(true, false)) {
+                    inFlight.release(permits);
+                }
+            };
+            // once the transfers run, they release the permits when they are done, even after the response
+            AtomicBoolean transfersStarted = new AtomicBoolean();
+            List<StagedUpload> batch = new CopyOnWriteArrayList<>();
+            Runnable abandonAll = () -> {
+                batch.forEach(StagedUpload::abandon);
+                if (!transfersStarted.get()) {
+                    releasePermits.run();
+                }
+            };
+
+            return Flux.fromIterable(fileParts)
+                    .flatMapSequential(filePart -> stageContent(filePart, false)
+                            .doOnNext(batch::add)
+                            .map(staged -> new StagingResult(filePart, staged, null))
+                            .onErrorResume(e -> Mono.just(new StagingResult(filePart, null, e))), batchConcurrency)
+                    .collectList()
+                    .flatMapMany(results -> registerAll(results, registration)
+                            .flatMapMany(registered -> {
+                                transfersStarted.set(true);
+                                return transferAll(results, registered, releasePermits);
+                            }))
+                    .doOnError(e -> abandonAll.run())
+                    .doOnCancel(abandonAll);
+        });
+    }
+
+    private Mono<Map<StagedUpload, File>> registerAll(List<StagingResult> results,
+                                                      Function<List<StagedContent>, Flux<File>> registration) {
+        List<StagingResult> stagedResults = results.stream()
+                .filter(result -> result.staged() != null)
+                .toList();
+        if (stagedResults.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        List<StagedUpload> staged = stagedResults.stream().map(StagingResult::staged).toList();
+        return registration.apply(stagedResults.stream()
+                        .map(result -> new StagedContent(result.filePart(), result.staged().contentHash, nodeId))
+                        .toList())
+                .collectList()
+                .flatMap(files -> {
+                    if (files.size() != staged.size()) {
+                        return Mono.error(new IllegalStateException("File registration returned " + files.size()
+                                + " files for " + staged.size() + " uploads"));
+                    }
+                    Map<StagedUpload, File> registered = new IdentityHashMap<>();
+                    for (int i = 0; i < staged.size(); i++) {
+                        registered.put(staged.get(i), files.get(i));
+                    }
+                    // a file that cannot be staged is abandoned, so it is not handed over for the transfer
+                    return Flux.fromIterable(registered.entrySet())
+                            .concatMap(entry -> moveToStaging(entry.getKey(), entry.getValue())
+                                    .onErrorResume(e -> failUnstaged(entry.getKey(), entry.getValue(), e))
+                                    .doOnNext(entry::setValue))
+                            .then(Mono.just(registered));
+                });
+    }
+
+    private Flux<UploadOutcome> transferAll(List<StagingResult> results, Map<StagedUpload, File> registered,
+                                            Runnable releasePermits) {
+        List<File> handedOver = registered.entrySet().stream()
+                .filter(entry -> entry.getKey().handOver())
+                .map(Map.Entry::getValue)
+                .toList();
+        Map<Long, File> transferred = new ConcurrentHashMap<>();
+        CompletableFuture<Void> transfers = Flux.fromIterable(handedOver)
+                .flatMap(file -> reuseOrTransfer(file)
+                        .doOnNext(done -> transferred.put(done.getId(), done)), batchConcurrency)
+                .doFinally(signal -> releasePermits.run())
+                .then()
+                .toFuture();
+
+        return Mono.fromFuture(transfers, true)
+                .thenReturn(true)
+                .timeout(inlineWait, Mono.just(false))
+                .thenMany(Flux.fromIterable(results))
+                .map(result -> {
+                    if (result.staged() == null) {
+                        return new UploadOutcome(result.filePart().filename(), null, result.error());
+                    }
+                    File file = registered.get(result.staged());
+                    return new UploadOutcome(result.filePart().filename(), transferred.getOrDefault(file.getId(), file), null);
+                });
+    }
+
+    /**
+     * Takes an in-flight permit and writes the content to a temporary staging file.
+     */
+    private Mono<StagedUpload> stage(FilePart filePart) {
+        return Mono.defer(() -> {
+            if (!inFlight.tryAcquire()) {
+                return Mono.error(new ServiceUnavailableException("Upload capacity exceeded", "UPLOAD_CAPACITY_EXCEEDED"));
+            }
+            return stageContent(filePart, true);
+        });
+    }
+
+    /**
+     * Writes the content to a temporary staging file.
+     *
+     * @param ownsPermit whether the staged upload carries its own in-flight permit, rather than its batch
+     */
+    private Mono<StagedUpload> stageContent(FilePart filePart, boolean ownsPermit) {
+        return Mono.defer(() -> {
+            StagedUpload staged = new StagedUpload(stagingDir.resolve(UUID.randomUUID() + TEMPORARY_SUFFIX), ownsPermit);
+            return writeAndHash(filePart.content(), staged.temporaryPath)
+                    .map(contentHash -> {
+                        staged.contentHash = contentHash;
+                        return staged;
+                    })
+                    .doOnError(e -> staged.abandon())
+                    .doOnCancel(staged::abandon);
+        });
+    }
+
+    private Mono<File> moveToStaging(StagedUpload staged, File file) {
+        return Mono.fromCallable(() -> Files.move(staged.temporaryPath, stagedPath(file.getId()), StandardCopyOption.ATOMIC_MOVE))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenReturn(file);
+    }
+
+    /**
+     * The content of a registered file could not be moved to the staging directory. The row is given up
+     * right away instead of waiting for the retry worker to find the staged file missing, and the caller
+     * gets it as FAILED rather than an error for a row that exists.
+     */
+    private Mono<File> failUnstaged(StagedUpload staged, File file, Throwable e) {
+        log.error("In failUnstaged - staging of file {} failed: {}", file.getId(), e.getMessage());
+        staged.abandon();
+        return fileRepository.giveUpUpload(file.getId(), UploadStatus.PENDING.name(), file.getUploadAttempts(), maxAttempts)
+                // the retry worker of this node gives it up later
+                .onErrorResume(updateError -> Mono.just(0))
+                .thenReturn(file.toBuilder()
+                        .uploadStatus(UploadStatus.FAILED)
+                        .uploadAttempts(maxAttempts)
+                        .build());
+    }
+
+    private Mono<Void> retryFailedUploads() {
+        LocalDateTime staleBefore = LocalDateTime.now().minus(staleAfter);
+        return fileRepository.findRetryableUploads(nodeId, maxAttempts, staleBefore, retryBatchSize)
+                .concatMap(file -> Files.exists(stagedPath(file.getId())) ? retry(file) : giveUp(file))
+                .then();
+    }
+
+    private Mono<Void> retry(File file) {
+        if (!inFlight.tryAcquire()) {
+            return Mono.empty();
+        }
+        return fileRepository.claimUpload(file.getId(), file.getUploadStatus().name(), file.getUploadAttempts(), LocalDateTime.now())
+                .flatMap(claimed -> {
+                    if (claimed == 0) {
+                        return Mono.empty();
+                    }
+                    log.info("In retryFailedUploads - retrying upload of file {}, attempt {}", file.getId(), file.getUploadAttempts() + 1);
+                    return transfer(file);
+                })
+                .doFinally(signal -> inFlight.release())
+                .then();
+    }
+
+    /**
+     * The staged content is gone, e.g. the staging directory did not survive a restart. Without giving up,
+     * the row would stay retryable forever and hold a place in every retry batch.
+     */
+    private Mono<Void> giveUp(File file) {
+        return fileRepository.giveUpUpload(file.getId(), file.getUploadStatus().name(), file.getUploadAttempts(), maxAttempts)
+                .doOnNext(updated -> {
+                    if (updated == 1) {
+                        log.warn("In retryFailedUploads - staged content of file {} is gone, upload given up", file.getId());
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Writes the content to the staging file and returns its hex SHA-256, computed on the same pass.
+     */
+    private static Mono<String> writeAndHash(Flux<DataBuffer> content, Path path) {
+        return Mono.defer(() -> {
+            MessageDigest digest = sha256();
+            Flux<DataBuffer> digestedContent = content.doOnNext(dataBuffer -> {
+                try (DataBuffer.ByteBufferIterator iterator = dataBuffer.readableByteBuffers()) {
+                    iterator.forEachRemaining(digest::update);
+                }
+            });
+            return DataBufferUtils.write(digestedContent, path)
+                    .then(Mono.fromCallable(() -> HexFormat.of().formatHex(digest.digest())));
+        });
+    }
+
+    /**
+     * Points the file at an already stored object with the same content, or transfers it.
+     */
+    private Mono<File> reuseOrTransfer(File file) {
+        return fileRepository.findStoredByContentHash(file.getContentHash())
+                .flatMap(stored -> fileRepository.markStored(file.getId(), stored.getStorageKey(), stored.getStorageLink())
+                        .then(deleteQuietly(stagedPath(file.getId())))
+                        .thenReturn(file.toBuilder()
+                                .uploadStatus(UploadStatus.STORED)
+                                .storageKey(stored.getStorageKey())
+                                .storageLink(stored.getStorageLink())
+                                .build()))
+                .doOnNext(reused -> log.info("In reuseOrTransfer - file {} reuses the stored object of the same content", file.getId()))
+                .onErrorResume(e -> {
+                    log.warn("In reuseOrTransfer - deduplication of file {} failed: {}", file.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> transfer(file)));
+    }
+
+    /**
+     * Sends the staged file to S3 and records the outcome; never fails. The caller holds an in-flight permit.
+     */
+    private Mono<File> transfer(File file) {
+        Path stagedPath = stagedPath(file.getId());
+        return storageService.uploadFile(file.getStorageKey(), file.getFileName(),
+                        DataBufferUtils.read(stagedPath, DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE))
+                .then(updateUploadStatus(file, UploadStatus.STORED))
+                .flatMap(stored -> deleteQuietly(stagedPath).thenReturn(stored))
+                .doOnSuccess(stored -> log.info("In transfer - file {} stored", file.getId()))
+                .onErrorResume(e -> {
+                    log.error("In transfer - upload of file {} failed: {}", file.getId(), e.getMessage());
+                    return updateUploadStatus(file, UploadStatus.FAILED)
+                            .onErrorResume(updateError -> Mono.just(file));
+                });
+    }
+
+    private Mono<File> updateUploadStatus(File file, UploadStatus uploadStatus) {
+        return fileRepository.updateUploadStatus(file.getId(), uploadStatus.name())
+                .thenReturn(file.toBuilder().uploadStatus(uploadStatus).build());
+    }
+
+    private Path stagedPath(Long fileId) {
+        return stagingDir.resolve(String.valueOf(fileId));
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("files.upload.node-id is not set and the host name is unknown", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Mono<Void> deleteQuietly(Path path) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("In deleteQuietly - failed to delete staged file {}: {}", path, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * A completely received file, to be registered with its content hash and the node it is staged on.
+     */
+    public record StagedContent(FilePart filePart, String contentHash, String stagedOn) {
+    }
+
+    /**
+     * Result of one file of a batch: the registered file, or the error that kept it from being registered.
+     */
+    public record UploadOutcome(String fileName, File file, Throwable error) {
+    }
+
+    private record StagingResult(FilePart filePart, StagedUpload staged, Throwable error) {
+    }
+
+    /**
+     * A spooled file, with its own in-flight permit unless it is part of a batch. The file belongs to the
+     * request until the transfer takes it over; abandoning before that drops the temporary file and
+     * releases the permit.
+     */
+    private class StagedUpload {
+
+        private final Path temporaryPath;
+        private final boolean ownsPermit;
+        private final AtomicBoolean held = new AtomicBoolean(true);
+        private String contentHash;
+
+        StagedUpload(Path temporaryPath, boolean ownsPermit) {
+            this.temporaryPath = temporaryPath;
+            this.ownsPermit = ownsPermit;
+        }
+
+        boolean handOver() {
+            return held.compareAndSet(true, false);
+        }
+
+        void abandon() {
+            if (held.compareAndSet(true, false)) {
+                if (ownsPermit) {
+                    inFlight.release();
+                }
+                deleteQuietly(temporaryPath).subscribe();
+            }
+        }
+    }
+}
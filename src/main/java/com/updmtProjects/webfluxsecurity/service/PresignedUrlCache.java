@@ -0,0 +1,66 @@
+package com.updmtProjects.webfluxsecurity.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Presigned download URLs per (fileId, userId), kept until shortly before they expire. The loader does
+ * the access check as well as the signing, so a hit costs neither; a user keeps a URL that was issued to
+ * them until it expires anyway. Failed loads are not cached. The hit ratio is published as the
+ * files.download.url-cache.hit-ratio metric.
+ */
+@Component
+public class PresignedUrlCache {
+
+    private final AsyncCache<Key, StorageService.PresignedUrl> cache;
+
+    public PresignedUrlCache(@Value("${files.download.url-cache.refresh-before-expiry}") Duration refreshBeforeExpiry,
+                             @Value("${files.download.url-cache.max-size}") long maxSize,
+                             MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfter(new Expiry<Key, StorageService.PresignedUrl>() {
+                    @Override
+                    public long expireAfterCreate(Key key, StorageService.PresignedUrl url, long currentTime) {
+                        Duration usableFor = Duration.between(Instant.now(), url.expiresAt().minus(refreshBeforeExpiry));
+                        return Math.max(0, usableFor.toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, StorageService.PresignedUrl url, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, url, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, StorageService.PresignedUrl url, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+        Gauge.builder("files.download.url-cache.hit-ratio", this, PresignedUrlCache::hitRate)
+                .description("Share of download URL requests served from the cache")
+                .register(meterRegistry);
+    }
+
+    public Mono<StorageService.PresignedUrl> get(Long fileId, Long userId, Supplier<Mono<StorageService.PresignedUrl>> loader) {
+        return Mono.fromFuture(cache.get(new Key(fileId, userId), (key, executor) -> loader.get().toFuture()), true);
+    }
+
+    public double hitRate() {
+        return cache.synchronous().stats().hitRate();
+    }
+
+    private record Key(Long fileId, Long userId) {
+    }
+}
@@ -0,0 +1,279 @@
+package com.updmtProjects.webfluxsecurity.service;
+
+import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadSession;
+import com.updmtProjects.webfluxsecurity.entity.UploadSessionStatus;
+import com.updmtProjects.webfluxsecurity.exception.BadRequestException;
+import com.updmtProjects.webfluxsecurity.exception.ConflictException;
+import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
+import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
+import com.updmtProjects.webfluxsecurity.repository.UploadSessionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Resumable uploads: a session wraps an S3 multipart upload and every chunk of it becomes one part.
+ * All chunks but the last have the session's chunk size, so the chunk at an offset always maps to the
+ * same part number and a failed chunk can simply be sent again. The offset and the ETags of the parts
+ * live in the database, any node can take the next chunk; a short lock on the session row keeps two
+ * requests from writing the same part. Sessions that expire while open are swept periodically and their
+ * multipart uploads aborted, so S3 does not keep the parts.
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    // S3 limit of parts per multipart upload
+    private static final int MAX_PARTS = 10_000;
+
+    private final StorageService storageService;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final int chunkSize;
+    private final Duration sessionTtl;
+    private final Duration lockTimeout;
+    private final Duration sweepInterval;
+    private final int sweepBatchSize;
+
+    private Disposable sweepTask;
+
+    public ResumableUploadService(StorageService storageService,
+                                  UploadSessionRepository uploadSessionRepository,
+                                  TransactionalOperator transactionalOperator,
+                                  @Value("${yandex.upload.part-size}") DataSize chunkSize,
+                                  @Value("${files.resumable.session-ttl}") Duration sessionTtl,
+                                  @Value("${files.resumable.lock-timeout}") Duration lockTimeout,
+                                  @Value("${files.resumable.sweep-interval}") Duration sweepInterval,
+                                  @Value("${files.resumable.sweep-batch-size}") int sweepBatchSize) {
+        this.storageService = storageService;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+        this.sessionTtl = sessionTtl;
+        this.lockTimeout = lockTimeout;
+        this.sweepInterval = sweepInterval;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSweeping() {
+        sweepTask = Flux.interval(sweepInterval, sweepInterval)
+                .concatMap(tick -> sweepExpiredSessions()
+                        .onErrorResume(e -> {
+                            log.error("In startSweeping - failed to sweep upload sessions: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopSweeping() {
+        if (sweepTask != null) {
+            sweepTask.dispose();
+        }
+    }
+
+    public Mono<UploadSession> createSession(String fileName, long uploadLength, String storageKey, Long userId) {
+        if (fileName == null || fileName.isBlank()) {
+            return Mono.error(new BadRequestException("File name is required", "FILE_NAME_REQUIRED"));
+        }
+        if (uploadLength <= 0 || (uploadLength + chunkSize - 1) / chunkSize > MAX_PARTS) {
+            return Mono.error(new BadRequestException("Upload length must be between 1 and " + (long) chunkSize * MAX_PARTS + " bytes",
+                    "INVALID_UPLOAD_LENGTH"));
+        }
+        return storageService.createMultipartUpload(storageKey, fileName)
+                .flatMap(multipartUploadId -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    return uploadSessionRepository.save(UploadSession.builder()
+                            .userId(userId)
+                            .fileName(fileName)
+                            .storageKey(storageKey)
+                            .multipartUploadId(multipartUploadId)
+                            .uploadLength(uploadLength)
+                            .chunkSize(chunkSize)
+                            .status(UploadSessionStatus.OPEN)
+                            .created(now)
+                            .expiresAt(now.plus(sessionTtl))
+                            .build());
+                })
+                .doOnSuccess(session -> log.info("In createSession - upload session {} created for user {}", session.getId(), userId));
+    }
+
+    /**
+     * A completed session stays visible after it expires, so completing it again keeps returning its file.
+     */
+    public Mono<UploadSession> getSession(Long sessionId, Long userId) {
+        return uploadSessionRepository.findById(sessionId)
+                .filter(session -> session.getStatus() == UploadSessionStatus.COMPLETED
+                        || session.getExpiresAt().isAfter(LocalDateTime.now()))
+                .switchIfEmpty(Mono.error(new CustomNotFoundException("Upload session with ID " + sessionId + " not found")))
+                .flatMap(session -> session.getUserId().equals(userId)
+                        ? Mono.just(session)
+                        : Mono.error(new CustomAccessDeniedException("Access denied for upload session ID " + sessionId + " for user ID " + userId)));
+    }
+
+    /**
+     * Streams the chunk at the given offset to S3 as the next part.
+     *
+     * @return the new offset
+     */
+    public Mono<Long> appendChunk(Long sessionId, Long userId, long offset, long contentLength, Flux<DataBuffer> content) {
+        return getOpenSession(sessionId, userId)
+                .flatMap(session -> {
+                    if (offset != session.getUploadOffset()) {
+                        return Mono.error(offsetConflict(session));
+                    }
+                    long expectedLength = Math.min(session.getChunkSize(), session.getUploadLength() - offset);
+                    if (expectedLength == 0) {
+                        return Mono.error(new ConflictException("Upload session " + sessionId + " has received all content", "UPLOAD_ALREADY_RECEIVED"));
+                    }
+                    if (contentLength != expectedLength) {
+                        return Mono.error(new BadRequestException("Chunk at offset " + offset + " must be " + expectedLength + " bytes",
+                                "INVALID_CHUNK_LENGTH"));
+                    }
+                    int partNumber = Math.toIntExact(offset / session.getChunkSize()) + 1;
+                    long newOffset = offset + contentLength;
+
+                    // the part is recorded only while this request still holds the lock; a request whose lock
+                    // timed out meanwhile must not replace the ETag saved by the one that took over
+                    return withLock(session, lockedUntil -> storageService.uploadPart(session.getStorageKey(),
+                                    session.getMultipartUploadId(), partNumber, contentLength, content)
+                            .flatMap(etag -> uploadSessionRepository.advanceOffset(sessionId, offset, newOffset, lockedUntil)
+                                    .flatMap(advanced -> advanced == 0
+                                            ? Mono.error(offsetConflict(session))
+                                            : uploadSessionRepository.savePart(sessionId, partNumber, etag, contentLength))
+                                    .as(transactionalOperator::transactional))
+                            .thenReturn(newOffset));
+                });
+    }
+
+    /**
+     * Completes the multipart upload once all content has been received.
+     *
+     * @param registration creates the files row for the stored object and marks the session completed
+     *                     in the same transaction
+     * @return the registered file id; the same id again when the session was completed before
+     */
+    public Mono<Long> complete(Long sessionId, Long userId, Function<UploadSession, Mono<File>> registration) {
+        return getSession(sessionId, userId)
+                .flatMap(session -> {
+                    if (session.getStatus() == UploadSessionStatus.COMPLETED) {
+                        return Mono.just(session.getFileId());
+                    }
+                    if (session.getStatus() != UploadSessionStatus.OPEN) {
+                        return Mono.error(sessionClosed(session));
+                    }
+                    if (session.getUploadOffset() != session.getUploadLength()) {
+                        return Mono.error(new ConflictException("Upload session " + sessionId + " has received "
+                                + session.getUploadOffset() + " of " + session.getUploadLength() + " bytes", "UPLOAD_INCOMPLETE"));
+                    }
+                    return withLock(session, lockedUntil -> uploadSessionRepository.findParts(sessionId)
+                            .map(part -> CompletedPart.builder()
+                                    .partNumber(part.getPartNumber())
+                                    .eTag(part.getEtag())
+                                    .build())
+                            .collectList()
+                            .flatMap(parts -> completeInStorage(session, parts))
+                            .then(registration.apply(session)
+                                    .flatMap(file -> uploadSessionRepository.markCompleted(sessionId, file.getId())
+                                            .thenReturn(file.getId()))
+                                    .as(transactionalOperator::transactional)));
+                })
+                .doOnSuccess(fileId -> log.info("In complete - upload session {} completed as file {}", sessionId, fileId));
+    }
+
+    public Mono<Void> abort(Long sessionId, Long userId) {
+        return getOpenSession(sessionId, userId)
+                .flatMap(session -> withLock(session, lockedUntil -> uploadSessionRepository.markAborted(sessionId)
+                        .then(storageService.abortMultipartUpload(session.getStorageKey(), session.getMultipartUploadId()))))
+                .doOnSuccess(aborted -> log.info("In abort - upload session {} aborted", sessionId));
+    }
+
+    /**
+     * Aborts the multipart uploads of up to sweep-batch-size sessions that expired while open.
+     *
+     * @return the number of sessions aborted
+     */
+    public Mono<Long> sweepExpiredSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        return uploadSessionRepository.findExpiredOpen(now, sweepBatchSize)
+                .concatMap(session -> uploadSessionRepository.markExpired(session.getId(), now)
+                        .filter(marked -> marked == 1)
+                        .flatMap(marked -> storageService.abortMultipartUpload(session.getStorageKey(), session.getMultipartUploadId())
+                                .thenReturn(session.getId())))
+                .count()
+                .doOnNext(swept -> {
+                    if (swept > 0) {
+                        log.info("In sweepExpiredSessions - {} expired upload sessions aborted", swept);
+                    }
+                });
+    }
+
+    /**
+     * The multipart upload is completed before the registration transaction, so a completion whose
+     * registration failed is retried against an upload S3 no longer knows. An object of the full upload
+     * length under the key means the upload was completed before, and the retry goes on to register it.
+     */
+    private Mono<Void> completeInStorage(UploadSession session, List<CompletedPart> parts) {
+        return storageService.completeMultipartUpload(session.getStorageKey(), session.getMultipartUploadId(), parts)
+                .onErrorResume(e -> storageService.getObjectSize(session.getStorageKey())
+                        .filter(size -> size == session.getUploadLength())
+                        .switchIfEmpty(Mono.error(e))
+                        .doOnNext(size -> log.info("In completeInStorage - upload session {} was already completed in storage", session.getId()))
+                        .then());
+    }
+
+    private Mono<UploadSession> getOpenSession(Long sessionId, Long userId) {
+        return getSession(sessionId, userId)
+                .flatMap(session -> session.getStatus() == UploadSessionStatus.OPEN
+                        ? Mono.just(session)
+                        : Mono.error(sessionClosed(session)));
+    }
+
+    /**
+     * Runs the action while holding the lock on the session at its current offset. The lock is released
+     * when the action fails; a successful action releases it itself by moving the session on.
+     *
+     * @param action gets the locked_until of the lock, which identifies it until another request takes over
+     */
+    private <T> Mono<T> withLock(UploadSession session, Function<LocalDateTime, Mono<T>> action) {
+        LocalDateTime now = LocalDateTime.now();
+        // whole seconds, the column keeps no fraction and the value has to compare equal when read back
+        LocalDateTime lockedUntil = now.plus(lockTimeout).truncatedTo(ChronoUnit.SECONDS);
+        return uploadSessionRepository.lock(session.getId(), session.getUploadOffset(), now, lockedUntil)
+                .flatMap(locked -> {
+                    if (locked == 0) {
+                        return Mono.error(offsetConflict(session));
+                    }
+                    return action.apply(lockedUntil)
+                            .onErrorResume(e -> uploadSessionRepository.unlock(session.getId(), session.getUploadOffset(), lockedUntil)
+                                    .then(Mono.error(e)));
+                });
+    }
+
+    private static ConflictException offsetConflict(UploadSession session) {
+        return new ConflictException("Upload session " + session.getId() + " is at offset " + session.getUploadOffset()
+                + " or is being written by another request", "UPLOAD_OFFSET_CONFLICT");
+    }
+
+    private static ConflictException sessionClosed(UploadSession session) {
+        return new ConflictException("Upload session " + session.getId() + " is " + session.getStatus(), "UPLOAD_SESSION_CLOSED");
+    }
+}
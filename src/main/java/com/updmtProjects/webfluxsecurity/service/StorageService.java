@@ -1,27 +1,69 @@
 package com.updmtProjects.webfluxsecurity.service;
 
+import com.updmtProjects.webfluxsecurity.exception.RangeNotSatisfiableException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.ContentDisposition;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import org.springframework.core.io.buffer.DataBuffer;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Slf4j
 public class StorageService {
 
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
     @Value("${yandex.bucket-name}")
     private String bucketName;
+    // files up to one part are sent with a single putObject, larger ones as multipart upload
+    @Value("${yandex.upload.part-size}")
+    private DataSize partSize;
+    // parts sent at once per upload; memory per upload is about (concurrency + 1) * partSize
+    @Value("${yandex.upload.concurrency}")
+    private Integer concurrency;
+    @Value("${yandex.upload.part-retries}")
+    private Integer partRetries;
+    @Value("${yandex.upload.retry-backoff}")
+    private Duration retryBackoff;
+    @Value("${yandex.presigned-url-ttl}")
+    private Duration presignedUrlTtl;
 
     private final S3AsyncClient s3AsyncClient;
     private final S3Presigner s3Presigner;
@@ -32,31 +74,355 @@ public class StorageService {
         this.s3Presigner = s3Presigner;
     }
 
-    public Mono<String> uploadFile(FilePart filePart) {
-        String fileName = filePart.filename();
+    /**
+     * Streams the content to S3 while it is being read. Files larger than one part are sent as
+     * a multipart upload with up to concurrency parts in flight, so memory does not depend on the file size.
+     *
+     * @param key      object key, see {@link com.updmtProjects.webfluxsecurity.util.StorageKeys}
+     * @param fileName display name, sent as the Content-Disposition file name
+     */
+    public Mono<String> uploadFile(String key, String fileName, Flux<DataBuffer> content) {
+        int partSizeInBytes = Math.toIntExact(partSize.toBytes());
+        String contentDisposition = contentDisposition(fileName);
+
+        return toParts(content, partSizeInBytes)
+                .switchOnFirst((first, parts) -> {
+                    if (!first.hasValue()) {
+                        return parts.then(putObject(key, contentDisposition, ByteBuffer.allocate(0)));
+                    }
+                    // only the last part can be short, so a short first part is the whole file
+                    if (first.get().remaining() < partSizeInBytes) {
+                        return parts.next().flatMap(part -> putObject(key, contentDisposition, part));
+                    }
+                    return multipartUpload(key, contentDisposition, parts);
+                })
+                .then(Mono.just("File uploaded: " + key))
+                .doOnSubscribe(subscription -> log.info("Начало загрузки файла на S3"));
+    }
+
+    /**
+     * Streams the object, or the requested byte range of it, as it arrives from S3. Demand of the
+     * subscriber is passed on to the S3 response, so memory does not depend on the object size.
+     *
+     * @param range    a single byte range in Range header syntax, or null for the whole object
+     * @param fileName name of the file being downloaded; the object can be shared by files of other users
+     *                 with the same content, so the disposition stored with it is not used
+     */
+    public Mono<ObjectContent> downloadFile(String key, String range, String fileName) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .build();
 
-        return DataBufferUtils.join(filePart.content())
-                .map(dataBuffer -> {
-                    long fileSize = dataBuffer.readableByteCount();
-                    DataBufferUtils.release(dataBuffer);
-                    return fileSize;
+        return Mono.fromFuture(() -> s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.<GetObjectResponse>toPublisher()))
+                .map(publisher -> {
+                    GetObjectResponse response = publisher.response();
+                    return new ObjectContent(Flux.from(publisher), response.contentLength(), response.contentRange(),
+                            response.contentType(), attachmentDisposition(fileName), response.eTag());
                 })
-                .flatMap(fileSize -> {
-                    PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .onErrorResume(e -> isRangeNotSatisfiable(e)
+                        ? headObject(key).flatMap(head -> Mono.error(new RangeNotSatisfiableException(
+                                "Range " + range + " is not satisfiable", head.contentLength())))
+                        : Mono.error(e));
+    }
+
+    /**
+     * Signs a GET of the object valid for presigned-url-ttl. Signing is local, no request is sent.
+     * The response is signed to carry the Content-Disposition of the given file name, see
+     * {@link #downloadFile(String, String, String)}.
+     */
+    public Mono<PresignedUrl> presignDownload(String key, String fileName) {
+        return Mono.fromCallable(() -> {
+            GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                    .signatureDuration(presignedUrlTtl)
+                    .getObjectRequest(GetObjectRequest.builder()
                             .bucket(bucketName)
-                            .key(fileName)
-                            .contentLength(fileSize)
-                            .contentType("application/octet-stream")
-                            .metadata(Map.of("Content-Disposition", "inline"))
-                            .build();
-
-                    Flux<ByteBuffer> byteBufferFlux = filePart.content().map(DataBuffer::asByteBuffer);
-
-                    return Mono.fromFuture(() ->
-                            s3AsyncClient.putObject(putObjectRequest,
-                                    AsyncRequestBody.fromPublisher(byteBufferFlux))
-                    ).doOnSubscribe(subscription -> log.info("Начало загрузки файла на S3"))
-                            .thenReturn("File uploaded: " + fileName);
-                });
+                            .key(key)
+                            .responseContentDisposition(attachmentDisposition(fileName))
+                            .build())
+                    .build();
+            PresignedGetObjectRequest presigned = s3Presigner.presignGetObject(presignRequest);
+            return new PresignedUrl(presigned.url().toString(), presigned.expiration());
+        });
+    }
+
+    /**
+     * Signs a PUT of the object valid for presigned-url-ttl, for uploading straight to the object store.
+     * Content-Type and Content-Disposition are part of the signature, the client has to send the returned
+     * headers with exactly these values.
+     */
+    public Mono<PresignedUpload> presignUpload(String key, String fileName) {
+        return Mono.fromCallable(() -> {
+            PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
+                    .signatureDuration(presignedUrlTtl)
+                    .putObjectRequest(PutObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(key)
+                            .contentType(CONTENT_TYPE)
+                            .contentDisposition(contentDisposition(fileName))
+                            .build())
+                    .build();
+            PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(presignRequest);
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            presigned.signedHeaders().forEach((name, values) -> {
+                // the client sets Host itself
+                if (!"host".equalsIgnoreCase(name)) {
+                    headers.put(name, String.join(",", values));
+                }
+            });
+            return new PresignedUpload(presigned.url().toString(), headers, presigned.expiration());
+        });
+    }
+
+    /**
+     * Size of the stored object, or empty when there is no object under the key.
+     */
+    public Mono<Long> getObjectSize(String key) {
+        return headObject(key)
+                .map(HeadObjectResponse::contentLength)
+                .onErrorResume(StorageService::isNotFound, e -> Mono.empty());
+    }
+
+    private Mono<HeadObjectResponse> headObject(String key) {
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.headObject(headObjectRequest));
+    }
+
+    private static boolean isRangeNotSatisfiable(Throwable e) {
+        return hasStatusCode(e, 416);
+    }
+
+    private static boolean isNotFound(Throwable e) {
+        return hasStatusCode(e, 404);
+    }
+
+    private static boolean hasStatusCode(Throwable e, int statusCode) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof S3Exception s3Exception && s3Exception.statusCode() == statusCode;
+    }
+
+    private static String contentDisposition(String fileName) {
+        return ContentDisposition.inline()
+                .filename(fileName, StandardCharsets.UTF_8)
+                .build()
+                .toString();
+    }
+
+    private static String attachmentDisposition(String fileName) {
+        return ContentDisposition.attachment()
+                .filename(fileName, StandardCharsets.UTF_8)
+                .build()
+                .toString();
+    }
+
+    private Mono<Void> putObject(String key, String contentDisposition, ByteBuffer content) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentLength((long) content.remaining())
+                .contentType(CONTENT_TYPE)
+                .contentDisposition(contentDisposition)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.putObject(putObjectRequest,
+                        AsyncRequestBody.fromByteBufferUnsafe(content.duplicate())))
+                .then();
+    }
+
+    private Mono<Void> multipartUpload(String key, String contentDisposition, Flux<ByteBuffer> parts) {
+        return startMultipartUpload(key, contentDisposition)
+                .flatMap(uploadId ->
+                        // flatMapSequential keeps the parts in order for the completion request
+                        parts.index()
+                                .flatMapSequential(part -> uploadPart(key, uploadId, Math.toIntExact(part.getT1()) + 1, part.getT2()),
+                                        concurrency, 1)
+                                .collectList()
+                                .flatMap(completedParts -> completeMultipartUpload(key, uploadId, completedParts))
+                                .onErrorResume(e -> abortMultipartUpload(key, uploadId).then(Mono.error(e)))
+                                .doOnCancel(() -> abortMultipartUpload(key, uploadId).subscribe()));
+    }
+
+    /**
+     * Starts a multipart upload whose parts are sent separately, see {@link #uploadPart(String, String, int, long, Flux)}.
+     *
+     * @return the upload id
+     */
+    public Mono<String> createMultipartUpload(String key, String fileName) {
+        return startMultipartUpload(key, contentDisposition(fileName));
+    }
+
+    private Mono<String> startMultipartUpload(String key, String contentDisposition) {
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(CONTENT_TYPE)
+                .contentDisposition(contentDisposition)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(createRequest))
+                .map(CreateMultipartUploadResponse::uploadId);
+    }
+
+    /**
+     * Streams one part of exactly contentLength bytes to S3 as it is received. The content cannot be
+     * replayed, so failed parts are not retried here.
+     *
+     * @return the ETag of the part
+     */
+    public Mono<String> uploadPart(String key, String uploadId, int partNumber, long contentLength, Flux<DataBuffer> content) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(contentLength)
+                .build();
+        Flux<ByteBuffer> body = content.map(dataBuffer -> {
+            try {
+                byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                dataBuffer.read(bytes);
+                return ByteBuffer.wrap(bytes);
+            } finally {
+                DataBufferUtils.release(dataBuffer);
+            }
+        });
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(uploadPartRequest, AsyncRequestBody.fromPublisher(body)))
+                .map(UploadPartResponse::eTag);
+    }
+
+    private Mono<CompletedPart> uploadPart(String key, String uploadId, int partNumber, ByteBuffer content) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) content.remaining())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(uploadPartRequest,
+                        AsyncRequestBody.fromByteBufferUnsafe(content.duplicate())))
+                .retryWhen(Retry.backoff(partRetries, retryBackoff)
+                        .filter(StorageService::isRetryable)
+                        .doBeforeRetry(signal -> log.warn("In uploadPart - retrying part {} of {}: {}",
+                                partNumber, key, signal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .map(response -> CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .build());
+    }
+
+    // client errors other than timeouts and throttling will fail again
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof S3Exception s3Exception) {
+            int status = s3Exception.statusCode();
+            return status >= 500 || status == 408 || status == 429;
+        }
+        return true;
+    }
+
+    public Mono<Void> completeMultipartUpload(String key, String uploadId, List<CompletedPart> completedParts) {
+        CompleteMultipartUploadRequest completeRequest = CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.completeMultipartUpload(completeRequest))
+                .doOnSuccess(response -> log.info("In completeMultipartUpload - {} uploaded in {} parts", key, completedParts.size()))
+                .then();
+    }
+
+    /**
+     * Never fails; a failure is only logged.
+     */
+    public Mono<Void> abortMultipartUpload(String key, String uploadId) {
+        AbortMultipartUploadRequest abortRequest = AbortMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.abortMultipartUpload(abortRequest))
+                .doOnSuccess(response -> log.warn("In abortMultipartUpload - multipart upload of {} aborted", key))
+                .onErrorResume(e -> {
+                    log.error("In abortMultipartUpload - failed to abort multipart upload of {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Regroups the received buffers into parts of exactly partSize bytes, except the last one.
+     * Received buffers are released as soon as they are copied.
+     */
+    private static Flux<ByteBuffer> toParts(Flux<DataBuffer> content, int partSize) {
+        return Flux.defer(() -> {
+            PartAccumulator accumulator = new PartAccumulator(partSize);
+            return content
+                    .concatMapIterable(dataBuffer -> {
+                        try {
+                            return accumulator.append(dataBuffer);
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(accumulator::remainder));
+        });
+    }
+
+    private static class PartAccumulator {
+
+        private final int partSize;
+        private byte[] part;
+        private int position;
+
+        PartAccumulator(int partSize) {
+            this.partSize = partSize;
+        }
+
+        List<ByteBuffer> append(DataBuffer dataBuffer) {
+            List<ByteBuffer> completed = new ArrayList<>(1);
+            while (dataBuffer.readableByteCount() > 0) {
+                if (part == null) {
+                    part = new byte[partSize];
+                    position = 0;
+                }
+                int length = Math.min(dataBuffer.readableByteCount(), partSize - position);
+                dataBuffer.read(part, position, length);
+                position += length;
+                if (position == partSize) {
+                    completed.add(ByteBuffer.wrap(part));
+                    part = null;
+                }
+            }
+            return completed;
+        }
+
+        // null when the content ended on a part boundary
+        ByteBuffer remainder() {
+            return part == null ? null : ByteBuffer.wrap(part, 0, position);
+        }
+    }
+
+    /**
+     * Body and headers of a downloaded object; contentRange is set for a partial response.
+     */
+    public record ObjectContent(Flux<ByteBuffer> content, long contentLength, String contentRange,
+                                String contentType, String contentDisposition, String eTag) {
+    }
+
+    public record PresignedUrl(String url, Instant expiresAt) {
+    }
+
+    public record PresignedUpload(String url, Map<String, String> headers, Instant expiresAt) {
     }
 }
@@ -1,37 +1,83 @@
 package com.updmtProjects.webfluxsecurity.service;
 
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
+import com.updmtProjects.webfluxsecurity.dto.FileDto;
 import com.updmtProjects.webfluxsecurity.dto.UserResponseDto;
 import com.updmtProjects.webfluxsecurity.dto.UserUpdateDto;
+import com.updmtProjects.webfluxsecurity.entity.Event;
+import com.updmtProjects.webfluxsecurity.entity.File;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
+import com.updmtProjects.webfluxsecurity.mapper.EventMapper;
+import com.updmtProjects.webfluxsecurity.mapper.FileMapper;
 import com.updmtProjects.webfluxsecurity.mapper.UserMapper;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
+import com.updmtProjects.webfluxsecurity.service.EventService.EventService;
+import com.updmtProjects.webfluxsecurity.service.FileService.FileService;
 import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import com.updmtProjects.webfluxsecurity.util.RoleConstants;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserManagementService {
 
+    @Value("${users.info-batch-size}")
+    private int infoBatchSize;
+    @Value("${pagination.max-limit}")
+    private int maxPageLimit;
+
     private final UserService userService;
     private final EventManagementService eventManagementService;
+    private final EventService eventService;
+    private final FileService fileService;
     private final UserMapper userMapper;
+    private final EventMapper eventMapper;
+    private final FileMapper fileMapper;
 
     public Mono<UserResponseDto> getUserInfo(Long id) {
         return userService.getUserById(id)
                 .flatMap(this::mapUserToDtoWithEvent);
     }
 
+    /**
+     * Users are read in batches; the events of a batch are loaded with one user_id IN query, their files
+     * with one id IN query, and both are joined to the users in memory.
+     */
     public Flux<UserResponseDto> getAllUsersInfo() {
         return userService.getAllUsers()
-                .flatMap(this::mapUserToDtoWithEvent);
+                .buffer(infoBatchSize)
+                // one batch at a time, so a slow client holds back reading instead of filling memory
+                .concatMap(this::mapUsersToDtoWithEvents, 1);
+    }
+
+    /**
+     * A page of users with their events; the events and files of the page are loaded like one batch of
+     * {@link #getAllUsersInfo}.
+     */
+    public Mono<KeysetPage<UserResponseDto>> getUsersInfoPage(String cursor, int limit) {
+        return Mono.defer(() -> {
+            long afterId = KeysetPage.afterId(cursor);
+            int pageSize = KeysetPage.pageSize(limit, maxPageLimit);
+            return userService.getUsersPage(afterId, pageSize + 1)
+                    .collectList()
+                    .map(users -> KeysetPage.of(users, pageSize, User::getId))
+                    .flatMap(page -> mapUsersToDtoWithEvents(page.items())
+                            .collectList()
+                            .map(users -> new KeysetPage<>(users, page.nextCursor())));
+        });
     }
 
     public Mono<UserResponseDto> updateUserDependingOnRole(Authentication authentication, UserUpdateDto userUpdateDto, Long userId) {
@@ -67,6 +113,37 @@ public class UserManagementService {
         return Mono.just(isAdmin || isOwner);
     }
 
+    private Flux<UserResponseDto> mapUsersToDtoWithEvents(List<User> users) {
+        if (users.isEmpty()) {
+            return Flux.empty();
+        }
+        List<Long> userIds = users.stream().map(User::getId).toList();
+
+        return eventService.findByUserIds(userIds)
+                .collectList()
+                .flatMap(events -> {
+                    Set<Long> fileIds = events.stream().map(Event::getFileId).collect(Collectors.toSet());
+                    // a few users with many events must not turn into one IN list beyond the limits of MySQL
+                    Mono<Map<Long, FileDto>> files = Flux.fromIterable(fileIds)
+                            .buffer(infoBatchSize)
+                            .concatMap(fileService::getFilesByIds)
+                            .collectMap(File::getId, fileMapper::mapToFileDto);
+                    return files.map(filesById -> events.stream()
+                            .collect(Collectors.groupingBy(Event::getUserId, Collectors.mapping(event -> {
+                                EventDto eventDto = eventMapper.map(event);
+                                eventDto.setFileGetDto(filesById.get(event.getFileId()));
+                                return eventDto;
+                            }, Collectors.toList()))));
+                })
+                .flatMapIterable(eventsByUserId -> users.stream()
+                        .map(user -> {
+                            UserResponseDto userResponseDto = userMapper.map(user);
+                            userResponseDto.setEvents(eventsByUserId.getOrDefault(user.getId(), Collections.emptyList()));
+                            return userResponseDto;
+                        })
+                        .toList());
+    }
+
     private Mono<UserResponseDto> mapUserToDtoWithEvent(User user) {
         return eventManagementService.getEventsByUserId(user.getId())
                 .collectList()
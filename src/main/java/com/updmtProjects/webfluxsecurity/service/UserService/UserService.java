@@ -9,8 +9,10 @@ public interface UserService {
 
     Mono<User> getUserById(Long id);
     Flux<User> getAllUsers();
+    Flux<User> getUsersPage(long afterId, int limit);
     Mono<User> createUser(User user);
     Mono<User> updateUser(Long id, UserUpdateDto userUpdateDto);
     Mono<User> deleteUser(Long id);
     Mono<User> getUserByUsername(String username);
+    Mono<Boolean> upgradePasswordHash(Long id, String oldPasswordHash, String newPasswordHash);
 }
@@ -4,8 +4,10 @@ import com.updmtProjects.webfluxsecurity.dto.UserUpdateDto;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
 import com.updmtProjects.webfluxsecurity.repository.UserRepository;
+import com.updmtProjects.webfluxsecurity.security.PrincipalStatusCache;
+import com.updmtProjects.webfluxsecurity.security.ReactivePasswordEncoder;
+import com.updmtProjects.webfluxsecurity.security.TokenVersionRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -18,23 +20,30 @@ import java.util.Objects;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final ReactivePasswordEncoder passwordEncoder;
+    private final PrincipalStatusCache principalStatusCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
 
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserRepository userRepository, ReactivePasswordEncoder passwordEncoder,
+                           PrincipalStatusCache principalStatusCache, TokenVersionRegistry tokenVersionRegistry) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.principalStatusCache = principalStatusCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
     }
 
     public Mono<User> createUser(User user) {
-        return userRepository.save(
-                user.toBuilder()
-                        .password(passwordEncoder.encode(user.getPassword()))
-                        .role(user.getRole())
-                        .enabled(true)
-                        .createdAt(LocalDateTime.now())
-                        .updatedAt(LocalDateTime.now())
-                        .build()
-        ).doOnSuccess(u -> log.info("In registerUser - user: {} created", u));
+        return passwordEncoder.encodeAsync(user.getPassword())
+                .flatMap(encodedPassword -> userRepository.save(
+                        user.toBuilder()
+                                .password(encodedPassword)
+                                .role(user.getRole())
+                                .enabled(true)
+                                .createdAt(LocalDateTime.now())
+                                .updatedAt(LocalDateTime.now())
+                                .build()
+                ))
+                .doOnSuccess(u -> log.info("In registerUser - user: {} created", u));
     }
 
     public Mono<User> updateUser(Long id, UserUpdateDto userUpdateDto) {
@@ -49,13 +58,16 @@ public class UserServiceImpl implements UserService {
                             if (Objects.nonNull(userUpdateDto.getLastName())) {
                                 user.setLastName(userUpdateDto.getLastName());
                             }
-                            if (Objects.nonNull(userUpdateDto.getRole())) {
+                            if (Objects.nonNull(userUpdateDto.getRole()) && userUpdateDto.getRole() != user.getRole()) {
                                 user.setRole(userUpdateDto.getRole());
+                                // tokens issued with the old role must not be accepted anymore
+                                user.setTokenVersion(user.getTokenVersion() + 1);
                             }
                             user.setUpdatedAt(LocalDateTime.now());
                             return userRepository.save(user);
                         }
                 )
+                .doOnSuccess(this::onUserChanged)
                 .doOnSuccess(u -> log.info("In updateUser - user: {} updated", u))
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("User not found")));
     }
@@ -65,13 +77,23 @@ public class UserServiceImpl implements UserService {
                 .flatMap(user -> {
                             user.setUpdatedAt(LocalDateTime.now());
                             user.setDeleted(Boolean.TRUE);
+                            user.setTokenVersion(user.getTokenVersion() + 1);
                             return userRepository.save(user);
                         }
                 )
+                .doOnSuccess(this::onUserChanged)
                 .doOnSuccess(user -> log.info("In deletedUser - user: {} deleted", user))
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("User not found")));
     }
 
+    private void onUserChanged(User user) {
+        if (user == null) {
+            return;
+        }
+        tokenVersionRegistry.update(user.getId(), user.getTokenVersion(), user.isEnabled() && !user.isDeleted());
+        principalStatusCache.invalidate(user.getId());
+    }
+
     public Mono<User> getUserById(Long id) {
         return userRepository.findById(id)
                 .switchIfEmpty(Mono.error(new CustomNotFoundException("User not found")));
@@ -81,7 +103,20 @@ public class UserServiceImpl implements UserService {
         return userRepository.findAll();
     }
 
+    public Flux<User> getUsersPage(long afterId, int limit) {
+        return userRepository.findPage(afterId, limit);
+    }
+
     public Mono<User> getUserByUsername(String username) {
         return userRepository.findByUsername(username);
     }
+
+    /**
+     * Replaces the hash only if it has not changed since it was read, so a concurrent password change wins.
+     */
+    public Mono<Boolean> upgradePasswordHash(Long id, String oldPasswordHash, String newPasswordHash) {
+        return userRepository.replacePassword(id, oldPasswordHash, newPasswordHash)
+                .map(updated -> updated == 1)
+                .doOnSuccess(upgraded -> log.info("In upgradePasswordHash - password hash of user: {} upgraded: {}", id, upgraded));
+    }
 }
@@ -0,0 +1,72 @@
+package com.updmtProjects.webfluxsecurity.util;
+
+import com.updmtProjects.webfluxsecurity.exception.BadRequestException;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of a list read in id order. Pages are read with {@code id > :afterId ORDER BY id LIMIT :limit},
+ * so every page costs one index range scan however deep it is. The cursor of the next page is the last id
+ * of this one, handed out as an opaque token; it is null on the last page.
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+
+    /**
+     * @param rows  up to limit + 1 rows; the extra row only tells that there is a next page
+     * @param idOf  the id the rows are ordered by
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, Long> idOf) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(items, encodeCursor(idOf.apply(items.get(limit - 1))));
+    }
+
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        return new KeysetPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR, nextCursor);
+        }
+        return response.body(items);
+    }
+
+    /**
+     * @return the id to read after; 0 for the first page
+     */
+    public static long afterId(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            long afterId = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+            if (afterId < 0) {
+                throw new IllegalArgumentException();
+            }
+            return afterId;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor", "INVALID_CURSOR");
+        }
+    }
+
+    public static int pageSize(int limit, int maxLimit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new BadRequestException("Limit must be between 1 and " + maxLimit, "INVALID_LIMIT");
+        }
+        return limit;
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.US_ASCII));
+    }
+}
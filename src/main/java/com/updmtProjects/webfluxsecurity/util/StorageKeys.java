@@ -0,0 +1,31 @@
+package com.updmtProjects.webfluxsecurity.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * Object keys for uploaded files: {@code 3f/a1/<uuid>}. The two-level prefix comes from a hash of the id,
+ * so keys spread evenly over the bucket's prefixes instead of one flat namespace, and the id makes keys
+ * unique whatever the display name is.
+ */
+public final class StorageKeys {
+
+    private StorageKeys() {
+    }
+
+    public static String generate() {
+        String id = UUID.randomUUID().toString();
+        byte[] hash = sha256(id);
+        return "%02x/%02x/%s".formatted(hash[0] & 0xff, hash[1] & 0xff, id);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+ALTER TABLE files
+    ADD COLUMN content_hash CHAR(64) NULL;
+
+CREATE INDEX idx_files_content_hash ON files (content_hash, upload_status);
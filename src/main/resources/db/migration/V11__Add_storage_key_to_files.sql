@@ -0,0 +1,8 @@
+ALTER TABLE files
+    ADD COLUMN storage_key VARCHAR(255) NULL;
+
+-- objects uploaded so far are keyed by their file name
+UPDATE files SET storage_key = file_name WHERE storage_key IS NULL;
+
+-- not unique: files with the same content share one object
+CREATE INDEX idx_files_storage_key ON files (storage_key);
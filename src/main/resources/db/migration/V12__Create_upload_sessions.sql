@@ -0,0 +1,29 @@
+CREATE TABLE upload_sessions
+(
+    id                  BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id             BIGINT       NOT NULL,
+    file_name           VARCHAR(255) NOT NULL,
+    storage_key         VARCHAR(255) NOT NULL,
+    multipart_upload_id VARCHAR(255) NOT NULL,
+    upload_length       BIGINT       NOT NULL,
+    upload_offset       BIGINT       NOT NULL DEFAULT 0,
+    chunk_size          INT          NOT NULL,
+    status              VARCHAR(16)  NOT NULL,
+    -- set while a node uploads a chunk or completes the session
+    locked_until        TIMESTAMP    NULL,
+    file_id             BIGINT       NULL,
+    created             TIMESTAMP    NOT NULL,
+    expires_at          TIMESTAMP    NOT NULL,
+    CONSTRAINT fk_upload_sessions_users FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_upload_sessions_files FOREIGN KEY (file_id) REFERENCES files (id)
+);
+
+CREATE TABLE upload_session_parts
+(
+    session_id  BIGINT       NOT NULL,
+    part_number INT          NOT NULL,
+    etag        VARCHAR(255) NOT NULL,
+    size        BIGINT       NOT NULL,
+    PRIMARY KEY (session_id, part_number),
+    CONSTRAINT fk_upload_session_parts_sessions FOREIGN KEY (session_id) REFERENCES upload_sessions (id) ON DELETE CASCADE
+);
@@ -0,0 +1,7 @@
+ALTER TABLE files
+    ADD COLUMN uploaded_by BIGINT NULL;
+
+-- owners of existing files are known from their events
+UPDATE files f JOIN events e ON e.file_id = f.id
+SET f.uploaded_by = e.user_id
+WHERE f.uploaded_by IS NULL;
@@ -0,0 +1,4 @@
+-- every change of a user row, including ones made outside the application, moves updated_at,
+-- so the token state sync of the nodes picks it up
+ALTER TABLE users
+    MODIFY COLUMN updated_at TIMESTAMP NULL DEFAULT NULL ON UPDATE CURRENT_TIMESTAMP;
@@ -0,0 +1,5 @@
+-- node that holds the staged content of an upload; only that node can retry it
+ALTER TABLE files
+    ADD COLUMN staged_on VARCHAR(255) NULL;
+
+CREATE INDEX idx_files_staged_on ON files (staged_on, upload_status);
@@ -0,0 +1,2 @@
+-- the sweeper looks up open sessions past their expiry
+CREATE INDEX idx_upload_sessions_status_expires_at ON upload_sessions (status, expires_at);
@@ -0,0 +1,11 @@
+CREATE TABLE jwt_signing_keys
+(
+    kid         VARCHAR(64)   PRIMARY KEY,
+    algorithm   VARCHAR(16)   NOT NULL,
+    public_key  VARCHAR(1024) NOT NULL,
+    private_key VARCHAR(2048) NOT NULL,
+    created_at  TIMESTAMP     NOT NULL,
+    expires_at  TIMESTAMP     NOT NULL
+);
+
+CREATE INDEX idx_jwt_signing_keys_expires_at ON jwt_signing_keys (expires_at);
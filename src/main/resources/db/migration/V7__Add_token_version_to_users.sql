@@ -0,0 +1,4 @@
+ALTER TABLE users
+    ADD COLUMN token_version INT NOT NULL DEFAULT 0;
+
+CREATE INDEX idx_users_updated_at ON users (updated_at);
@@ -0,0 +1,6 @@
+ALTER TABLE files
+    ADD COLUMN upload_status       VARCHAR(16) NOT NULL DEFAULT 'STORED',
+    ADD COLUMN upload_attempts     INT         NOT NULL DEFAULT 0,
+    ADD COLUMN upload_attempted_at TIMESTAMP   NULL;
+
+CREATE INDEX idx_files_upload_status ON files (upload_status, upload_attempted_at);
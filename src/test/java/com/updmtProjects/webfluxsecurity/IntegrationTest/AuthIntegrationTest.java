@@ -3,14 +3,17 @@ package com.updmtProjects.webfluxsecurity.IntegrationTest;
 import com.updmtProjects.webfluxsecurity.AbstractIntegrationTest;
 import com.updmtProjects.webfluxsecurity.dto.AuthRequestDto;
 import com.updmtProjects.webfluxsecurity.dto.AuthResponseDto;
+import com.updmtProjects.webfluxsecurity.dto.RefreshRequestDto;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.repository.UserRepository;
 import com.updmtProjects.webfluxsecurity.rest.AuthRestControllerV1;
+import com.updmtProjects.webfluxsecurity.rest.UserRestControllerV1;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -18,6 +21,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 public class AuthIntegrationTest extends AbstractIntegrationTest {
@@ -33,7 +37,7 @@ public class AuthIntegrationTest extends AbstractIntegrationTest {
 
     @BeforeEach
     public void beforeEach() {
-        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
     }
 
@@ -89,7 +93,7 @@ public class AuthIntegrationTest extends AbstractIntegrationTest {
 
     @Test
     public void tryToLoginWhenUserIdDisabled_400() {
-        User testUser = new User(null, "testUserDisabled", passwordEncoder.encode("testPasswordDisabled"), UserRole.ADMIN, "Test", "User", false, LocalDateTime.now(), LocalDateTime.now(), false);
+        User testUser = new User(null, "testUserDisabled", passwordEncoder.encode("testPasswordDisabled"), UserRole.ADMIN, "Test", "User", false, LocalDateTime.now(), LocalDateTime.now(), false, 0);
         userRepository.save(testUser).block();
         AuthRequestDto requestDto = new AuthRequestDto("testUserDisabled", "testPasswordDisabled");
 
@@ -102,4 +106,86 @@ public class AuthIntegrationTest extends AbstractIntegrationTest {
                 .expectStatus().isBadRequest();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void refreshWithRefreshToken_200_andReuseRevokesAllTokens_400() {
+        AuthResponseDto loggedIn = login();
+
+        AuthResponseDto refreshed = webTestClient
+                .post()
+                .uri(AuthRestControllerV1.ROOT_URL + "/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RefreshRequestDto(loggedIn.getRefreshToken()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AuthResponseDto.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(refreshed.getToken());
+        assertNotEquals(loggedIn.getRefreshToken(), refreshed.getRefreshToken());
+
+        // the first refresh token is used up; presenting it again is treated as theft
+        webTestClient
+                .post()
+                .uri(AuthRestControllerV1.ROOT_URL + "/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RefreshRequestDto(loggedIn.getRefreshToken()))
+                .exchange()
+                .expectStatus().isBadRequest();
+        // ...which revokes the refresh token issued in its place as well
+        webTestClient
+                .post()
+                .uri(AuthRestControllerV1.ROOT_URL + "/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RefreshRequestDto(refreshed.getRefreshToken()))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void logout_204_andTokensRejectedAfterwards() {
+        AuthResponseDto loggedIn = login();
+
+        webTestClient
+                .get()
+                .uri(UserRestControllerV1.ROOT_URL)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + loggedIn.getToken())
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient
+                .post()
+                .uri(AuthRestControllerV1.ROOT_URL + "/logout")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + loggedIn.getToken())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RefreshRequestDto(loggedIn.getRefreshToken()))
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient
+                .get()
+                .uri(UserRestControllerV1.ROOT_URL)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + loggedIn.getToken())
+                .exchange()
+                .expectStatus().isUnauthorized();
+        webTestClient
+                .post()
+                .uri(AuthRestControllerV1.ROOT_URL + "/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RefreshRequestDto(loggedIn.getRefreshToken()))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private AuthResponseDto login() {
+        return webTestClient
+                .post()
+                .uri(AuthRestControllerV1.ROOT_URL + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AuthRequestDto("testUser", "testPassword"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AuthResponseDto.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -2,8 +2,10 @@ package com.updmtProjects.webfluxsecurity.IntegrationTest;
 
 import com.updmtProjects.webfluxsecurity.AbstractIntegrationTest;
 import com.updmtProjects.webfluxsecurity.TestUtils;
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
 import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.repository.EventRepository;
@@ -12,16 +14,29 @@ import com.updmtProjects.webfluxsecurity.repository.UserRepository;
 import com.updmtProjects.webfluxsecurity.rest.EventRestControllerV1;
 import com.updmtProjects.webfluxsecurity.security.SecurityService;
 import com.updmtProjects.webfluxsecurity.security.TokenDetails;
+import com.updmtProjects.webfluxsecurity.util.KeysetPage;
 import net.javacrumbs.jsonunit.core.Option;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
 
 import static net.javacrumbs.jsonunit.assertj.JsonAssertions.assertThatJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+// the feed replays one event per query, resuming reads several pages
+@TestPropertySource(properties = "events.feed.replay-page-size=1")
 public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @Autowired
@@ -44,7 +59,7 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @BeforeEach
     public void beforeEach() {
-        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
     }
 
@@ -65,7 +80,7 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         User currentUser = userRepository.findByUsername(username).block();
 
-        File testFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File testFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
 
         Event testEvent = new Event(null, null, testFile.getId(), currentUser.getId());
@@ -96,7 +111,7 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         User currentUser = userRepository.findByUsername(username).block();
 
-        File testFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File testFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
 
         Event testEvent = new Event(null, null, testFile.getId(), currentUser.getId());
@@ -116,7 +131,7 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
         String passwordUserRole = "testPassword";
         String usernameAdminRole = "testUser";
 
-        User testRoleUser = new User(null, "testUserRoleUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false);
+        User testRoleUser = new User(null, "testUserRoleUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false, 0);
         userRepository.save(testRoleUser).block();
 
         TokenDetails tokenDetails = securityService.authenticate(usernameUserRole, passwordUserRole).block();
@@ -124,7 +139,7 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         User testRoleAdmin = userRepository.findByUsername(usernameAdminRole).block();
 
-        File testFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File testFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
 
         Event testEvent = new Event(null, null, testFile.getId(), testRoleAdmin.getId());
@@ -149,16 +164,16 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         User currentUser = userRepository.findByUsername(username).block();
 
-        File firstTestFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File firstTestFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(firstTestFile).block();
 
         Event firstTestEvent = new Event(null, null, firstTestFile.getId(), currentUser.getId());
         eventRepository.save(firstTestEvent).block();
 
-        User testRoleUser = new User(null, "testUserRoleUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false);
+        User testRoleUser = new User(null, "testUserRoleUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false, 0);
         userRepository.save(testRoleUser).block();
 
-        File secondTestFile = new File(null, "secondFileName", "SecondTestStorageLink", null, false);
+        File secondTestFile = new File(null, "secondFileName", "secondFileName", "SecondTestStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(secondTestFile).block();
 
         Event secondTestEvent = new Event(null, null, secondTestFile.getId(), currentUser.getId());
@@ -190,13 +205,13 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         User currentUser = userRepository.findByUsername(username).block();
 
-        File firstTestFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File firstTestFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(firstTestFile).block();
 
         Event firstTestEvent = new Event(null, null, firstTestFile.getId(), currentUser.getId());
         eventRepository.save(firstTestEvent).block();
 
-        File secondTestFile = new File(null, "secondFileName", "SecondTestStorageLink", null, false);
+        File secondTestFile = new File(null, "secondFileName", "secondFileName", "SecondTestStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(secondTestFile).block();
 
         Event secondTestEvent = new Event(null, null, secondTestFile.getId(), currentUser.getId());
@@ -218,6 +233,124 @@ public class EventControllerV1IntegrationTest extends AbstractIntegrationTest {
                 .isEqualTo(expectedResponse);
     }
 
+    @Test
+    public void getAllEventsPageByPage_200() {
+        TokenDetails tokenDetails = securityService.authenticate("testUser", "testPassword").block();
+        String bearerToken = tokenDetails.getToken();
+
+        User currentUser = userRepository.findByUsername("testUser").block();
+
+        for (String fileName : new String[]{"testFileName", "secondFileName"}) {
+            File testFile = new File(null, fileName, fileName, "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
+            fileRepository.save(testFile).block();
+            eventRepository.save(new Event(null, null, testFile.getId(), currentUser.getId())).block();
+        }
+
+        String nextCursor = webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(EventRestControllerV1.ROOT_URL + "/all").queryParam("limit", 1).build())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].fileGetDto.fileName").isEqualTo("testFileName")
+                .returnResult().getResponseHeaders().getFirst(KeysetPage.NEXT_CURSOR);
+
+        assertNotNull(nextCursor);
+
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(EventRestControllerV1.ROOT_URL + "/all")
+                        .queryParam("limit", 1)
+                        .queryParam("cursor", nextCursor)
+                        .build())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(KeysetPage.NEXT_CURSOR)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].fileGetDto.fileName").isEqualTo("secondFileName");
+
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(EventRestControllerV1.ROOT_URL + "/all").queryParam("cursor", "not a cursor").build())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void streamAllEventsAsNdjson_200() {
+        TokenDetails tokenDetails = securityService.authenticate("testUser", "testPassword").block();
+        String bearerToken = tokenDetails.getToken();
+
+        User currentUser = userRepository.findByUsername("testUser").block();
+
+        for (String fileName : new String[]{"testFileName", "secondFileName"}) {
+            File testFile = new File(null, fileName, fileName, "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
+            fileRepository.save(testFile).block();
+            eventRepository.save(new Event(null, null, testFile.getId(), currentUser.getId())).block();
+        }
+
+        Flux<EventDto> events = webTestClient
+                .get()
+                .uri(EventRestControllerV1.ROOT_URL + "/all/stream")
+                .header("Authorization", "Bearer " + bearerToken)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(EventDto.class)
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .assertNext(event -> assertEquals("testFileName", event.getFileGetDto().getFileName()))
+                .assertNext(event -> assertEquals("secondFileName", event.getFileGetDto().getFileName()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void resumeUserEventFeedWithLastEventId_200() {
+        TokenDetails tokenDetails = securityService.authenticate("testUser", "testPassword").block();
+        String bearerToken = tokenDetails.getToken();
+
+        User currentUser = userRepository.findByUsername("testUser").block();
+
+        Long[] eventIds = new Long[3];
+        String[] fileNames = {"testFileName", "secondFileName", "thirdFileName"};
+        for (int i = 0; i < fileNames.length; i++) {
+            File testFile = new File(null, fileNames[i], fileNames[i], "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
+            fileRepository.save(testFile).block();
+            eventIds[i] = eventRepository.save(new Event(null, null, testFile.getId(), currentUser.getId())).block().getId();
+        }
+
+        Flux<ServerSentEvent<EventDto>> feed = webTestClient
+                .get()
+                .uri(EventRestControllerV1.ROOT_URL + "/all/{userId}/feed", currentUser.getId())
+                .header("Authorization", "Bearer " + bearerToken)
+                .header(EventRestControllerV1.LAST_EVENT_ID, String.valueOf(eventIds[0]))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<EventDto>>() {})
+                .getResponseBody();
+
+        // both events after Last-Event-ID, although each replay page holds only one
+        StepVerifier.create(feed.filter(event -> event.data() != null))
+                .assertNext(event -> {
+                    assertEquals(String.valueOf(eventIds[1]), event.id());
+                    assertEquals("secondFileName", event.data().getFileGetDto().getFileName());
+                })
+                .assertNext(event -> {
+                    assertEquals(String.valueOf(eventIds[2]), event.id());
+                    assertEquals("thirdFileName", event.data().getFileGetDto().getFileName());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
     @Test
     public void tryToGetAllEventsFromDifferentUsers_404() {
         String username = "testUser";
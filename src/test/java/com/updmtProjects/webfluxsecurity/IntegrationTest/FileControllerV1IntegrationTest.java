@@ -2,8 +2,11 @@ package com.updmtProjects.webfluxsecurity.IntegrationTest;
 
 import com.updmtProjects.webfluxsecurity.AbstractIntegrationTest;
 import com.updmtProjects.webfluxsecurity.TestUtils;
+import com.updmtProjects.webfluxsecurity.dto.DirectUploadDto;
+import com.updmtProjects.webfluxsecurity.dto.DirectUploadRequestDto;
 import com.updmtProjects.webfluxsecurity.dto.FileDto;
 import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.repository.EventRepository;
@@ -20,16 +23,27 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
-import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
 import static net.javacrumbs.jsonunit.assertj.JsonAssertions.assertThatJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 
 public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
@@ -56,7 +70,7 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @BeforeEach
     public void beforeEach() {
-        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
     }
 
@@ -69,7 +83,7 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @Test
     public void uploadFile_200() {
-        Mockito.when(storageService.uploadFile(any(FilePart.class))).thenReturn(Mono.just("File uploaded successfully"));
+        Mockito.when(storageService.uploadFile(anyString(), anyString(), any())).thenReturn(Mono.just("File uploaded successfully"));
 
         String username = "testUser";
         String password = "testPassword";
@@ -102,7 +116,7 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @Test
     public void getFile_200() {
-        File testFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File testFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
 
         String username = "testUser";
@@ -119,9 +133,107 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
                 .expectStatus().isOk();
     }
 
+    @Test
+    public void getFileContentRange_206() {
+        File testFile = new File(null, "testFileName", "3f/a1/testKey", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
+        fileRepository.save(testFile).block();
+        Mockito.when(storageService.downloadFile("3f/a1/testKey", "bytes=0-4", "testFileName")).thenReturn(Mono.just(new StorageService.ObjectContent(
+                Flux.just(ByteBuffer.wrap("Hello".getBytes(StandardCharsets.UTF_8))), 5, "bytes 0-4/11",
+                "text/plain", "attachment; filename=\"testFileName\"", "\"testETag\"")));
+
+        TokenDetails tokenDetails = securityService.authenticate("testUser", "testPassword").block();
+        String bearerToken = tokenDetails.getToken();
+
+        webTestClient
+                .get()
+                .uri(FileRestControllerV1.ROOT_URL + "/{fileId}/content", testFile.getId())
+                .header("Authorization", "Bearer " + bearerToken)
+                .header(HttpHeaders.RANGE, "bytes=0-4")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 0-4/11")
+                .expectHeader().contentLength(5)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"testFileName\"")
+                .expectBody(String.class).isEqualTo("Hello");
+    }
+
+    @Test
+    public void getDownloadUrlTwice_signedOnce_200() {
+        File testFile = new File(null, "testFileName", "3f/a1/testKey", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
+        fileRepository.save(testFile).block();
+        Mockito.when(storageService.presignDownload("3f/a1/testKey", "testFileName")).thenReturn(Mono.just(new StorageService.PresignedUrl(
+                "https://storage.yandexcloud.net/webflux/3f/a1/testKey?X-Amz-Signature=test", Instant.now().plus(Duration.ofMinutes(15)))));
+
+        TokenDetails tokenDetails = securityService.authenticate("testUser", "testPassword").block();
+        String bearerToken = tokenDetails.getToken();
+
+        for (int i = 0; i < 2; i++) {
+            webTestClient
+                    .get()
+                    .uri(FileRestControllerV1.ROOT_URL + "/{fileId}/download-url", testFile.getId())
+                    .header("Authorization", "Bearer " + bearerToken)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.url").isEqualTo("https://storage.yandexcloud.net/webflux/3f/a1/testKey?X-Amz-Signature=test");
+        }
+
+        Mockito.verify(storageService, Mockito.times(1)).presignDownload("3f/a1/testKey", "testFileName");
+    }
+
+    @Test
+    public void directUploadAndComplete_200() {
+        Mockito.when(storageService.presignUpload(anyString(), eq("direct.txt"))).thenAnswer(invocation -> Mono.just(new StorageService.PresignedUpload(
+                "https://storage.yandexcloud.net/webflux/" + invocation.getArgument(0) + "?X-Amz-Signature=test",
+                Map.of("content-type", "application/octet-stream"), Instant.now().plus(Duration.ofMinutes(15)))));
+        // the client has not uploaded the object at the first completion
+        Mockito.when(storageService.getObjectSize(anyString())).thenReturn(Mono.empty(), Mono.just(11L));
+
+        TokenDetails tokenDetails = securityService.authenticate("testUser", "testPassword").block();
+        String bearerToken = tokenDetails.getToken();
+
+        DirectUploadRequestDto request = new DirectUploadRequestDto();
+        request.setFileName("direct.txt");
+
+        DirectUploadDto directUpload = webTestClient
+                .post()
+                .uri(FileRestControllerV1.ROOT_URL + "/direct-uploads")
+                .header("Authorization", "Bearer " + bearerToken)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(DirectUploadDto.class).returnResult().getResponseBody();
+
+        assertEquals("PUT", directUpload.getMethod());
+        assertEquals("application/octet-stream", directUpload.getHeaders().get("content-type"));
+
+        webTestClient
+                .post()
+                .uri(FileRestControllerV1.ROOT_URL + "/direct-uploads/{fileId}/complete", directUpload.getFileId())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+        for (int i = 0; i < 2; i++) {
+            webTestClient
+                    .post()
+                    .uri(FileRestControllerV1.ROOT_URL + "/direct-uploads/{fileId}/complete", directUpload.getFileId())
+                    .header("Authorization", "Bearer " + bearerToken)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.uploadStatus").isEqualTo("STORED");
+        }
+
+        // completing twice registers one event
+        assertEquals(1L, eventRepository.findAll()
+                .filter(event -> event.getFileId().equals(directUpload.getFileId()))
+                .count().block());
+    }
+
     @Test
     public void tryToGetNonExistedFile_404() {
-        File testFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File testFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
 
         String username = "testUser";
@@ -140,11 +252,11 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @Test
     public void uploadAndGetFileForUserRoleUser_200() {
-        Mockito.when(storageService.uploadFile(any(FilePart.class))).thenReturn(Mono.just("File uploaded successfully"));
+        Mockito.when(storageService.uploadFile(anyString(), anyString(), any())).thenReturn(Mono.just("File uploaded successfully"));
 
         String password = "testPassword";
 
-        User testUser = new User(null, "testUserRoleUser", passwordEncoder.encode(password), UserRole.USER, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUserRoleUser", passwordEncoder.encode(password), UserRole.USER, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
 
         TokenDetails tokenDetails = securityService.authenticate(testUser.getUsername(), password).block();
@@ -181,7 +293,7 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @Test
     public void tryToUploadAndGetFileForAdminRoleUser_403() {
-        Mockito.when(storageService.uploadFile(any(FilePart.class))).thenReturn(Mono.just("File uploaded successfully"));
+        Mockito.when(storageService.uploadFile(anyString(), anyString(), any())).thenReturn(Mono.just("File uploaded successfully"));
 
         String adminUsername = "testUser";
         String adminPassword = "testPassword";
@@ -206,7 +318,7 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         String userPassword = "testPassword";
 
-        User testUser = new User(null, "testUserRoleUser", passwordEncoder.encode(userPassword), UserRole.USER, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUserRoleUser", passwordEncoder.encode(userPassword), UserRole.USER, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
 
         TokenDetails userTokenDetails = securityService.authenticate(testUser.getUsername(), userPassword).block();
@@ -233,7 +345,7 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @Test
     public void createAdminAndUserFilesAndGet_200() {
-        Mockito.when(storageService.uploadFile(any(FilePart.class))).thenReturn(Mono.just("File uploaded successfully"));
+        Mockito.when(storageService.uploadFile(anyString(), anyString(), any())).thenReturn(Mono.just("File uploaded successfully"));
 
         String adminUsername = "testUser";
         String adminPassword = "testPassword";
@@ -256,7 +368,8 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
                 .expectStatus().isOk();
 
         MultipartBodyBuilder bodyBuilderSecond = new MultipartBodyBuilder();
-        bodyBuilderSecond.part("file", "Hello World")
+        // different content, identical files would share the stored object of the first one
+        bodyBuilderSecond.part("file", "Hello Second World")
                 .header("Content-Disposition", "form-data; name=file; filename=secondTestFile.txt");
 
         //создаем второй файл для админа
@@ -286,4 +399,54 @@ public class FileControllerV1IntegrationTest extends AbstractIntegrationTest {
                 .whenIgnoringPaths("[*].id", "[*].created")
                 .isEqualTo(expectedResponse);
     }
+
+    @Test
+    public void uploadFilesBatchAndGet_200() {
+        Mockito.when(storageService.uploadFile(anyString(), anyString(), any())).thenReturn(Mono.just("File uploaded successfully"));
+
+        String adminUsername = "testUser";
+        String adminPassword = "testPassword";
+
+        TokenDetails adminTokenDetails = securityService.authenticate(adminUsername, adminPassword).block();
+        String adminBearerToken = adminTokenDetails.getToken();
+
+        MultipartBodyBuilder bodyBuilder = new MultipartBodyBuilder();
+        bodyBuilder.part("files", "Hello World")
+                .header("Content-Disposition", "form-data; name=files; filename=firstTestFile.txt");
+        bodyBuilder.part("files", "Hello Second World")
+                .header("Content-Disposition", "form-data; name=files; filename=secondTestFile.txt");
+
+        //загружаем оба файла одним запросом
+        String batchResponse = webTestClient
+                .post()
+                .uri(FileRestControllerV1.ROOT_URL + "/upload/batch")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .header("Authorization", "Bearer " + adminBearerToken)
+                .body(BodyInserters.fromMultipartData(bodyBuilder.build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+
+        assertThatJson(batchResponse)
+                .whenIgnoringPaths("[*].file.id", "[*].file.created")
+                .isEqualTo(TestUtils.getExpectedResponse("FileControllerResponses/uploadFilesBatch.json"));
+
+        User currentUser = userRepository.findByUsername(adminUsername).block();
+        String actualResponse = webTestClient
+                .get()
+                .uri(FileRestControllerV1.ROOT_URL + "/all/{userId}", currentUser.getId())
+                .header("Authorization", "Bearer " + adminBearerToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .returnResult().getResponseBody();
+
+        String expectedResponse = TestUtils.getExpectedResponse("FileControllerResponses/getAllFiles.json");
+
+        assertThatJson(actualResponse)
+                .when(Option.IGNORING_ARRAY_ORDER)
+                .whenIgnoringPaths("[*].id", "[*].created")
+                .isEqualTo(expectedResponse);
+    }
 }
@@ -0,0 +1,284 @@
+package com.updmtProjects.webfluxsecurity.IntegrationTest;
+
+import com.updmtProjects.webfluxsecurity.AbstractIntegrationTest;
+import com.updmtProjects.webfluxsecurity.dto.FileDto;
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionDto;
+import com.updmtProjects.webfluxsecurity.dto.UploadSessionRequestDto;
+import com.updmtProjects.webfluxsecurity.entity.UploadSession;
+import com.updmtProjects.webfluxsecurity.entity.UploadSessionStatus;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
+import com.updmtProjects.webfluxsecurity.entity.User;
+import com.updmtProjects.webfluxsecurity.entity.UserRole;
+import com.updmtProjects.webfluxsecurity.repository.EventRepository;
+import com.updmtProjects.webfluxsecurity.repository.FileRepository;
+import com.updmtProjects.webfluxsecurity.repository.UploadSessionRepository;
+import com.updmtProjects.webfluxsecurity.repository.UserRepository;
+import com.updmtProjects.webfluxsecurity.rest.UploadSessionRestControllerV1;
+import com.updmtProjects.webfluxsecurity.security.SecurityService;
+import com.updmtProjects.webfluxsecurity.service.ResumableUploadService;
+import com.updmtProjects.webfluxsecurity.service.StorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+
+// chunks of 5 bytes, "Hello World" is sent in three
+@TestPropertySource(properties = "yandex.upload.part-size=5B")
+public class UploadSessionControllerV1IntegrationTest extends AbstractIntegrationTest {
+
+    private static final String CONTENT = "Hello World";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private SecurityService securityService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @MockBean
+    private StorageService storageService;
+
+    private String bearerToken;
+
+    @BeforeEach
+    public void beforeEach() {
+        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false, 0);
+        userRepository.save(testUser).block();
+        bearerToken = securityService.authenticate("testUser", "testPassword").block().getToken();
+
+        Mockito.when(storageService.createMultipartUpload(anyString(), eq("resumable.txt"))).thenReturn(Mono.just("testUploadId"));
+        Mockito.when(storageService.uploadPart(anyString(), eq("testUploadId"), anyInt(), anyLong(), any())).thenAnswer(invocation ->
+                invocation.<Flux<DataBuffer>>getArgument(4)
+                        .doOnNext(DataBufferUtils::release)
+                        .then(Mono.just("testETag" + invocation.<Integer>getArgument(2))));
+    }
+
+    @AfterEach
+    public void afterEach() {
+        uploadSessionRepository.deleteAll().block();
+        eventRepository.deleteAll().block();
+        fileRepository.deleteAll().block();
+        userRepository.deleteAll().block();
+    }
+
+    @Test
+    public void uploadInChunksAndComplete_200() {
+        Mockito.when(storageService.completeMultipartUpload(anyString(), eq("testUploadId"), argThat(parts -> parts.size() == 3)))
+                .thenReturn(Mono.empty());
+
+        UploadSessionDto session = createSession();
+        assertEquals(5, session.getChunkSize());
+
+        appendChunk(session.getId(), 0, "Hello")
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(UploadSessionRestControllerV1.UPLOAD_OFFSET, "5");
+
+        // the client did not see the response and sends the first chunk again
+        appendChunk(session.getId(), 0, "Hello")
+                .expectStatus().isEqualTo(409);
+
+        webTestClient
+                .head()
+                .uri(UploadSessionRestControllerV1.ROOT_URL + "/{sessionId}", session.getId())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(UploadSessionRestControllerV1.UPLOAD_OFFSET, "5");
+
+        appendChunk(session.getId(), 5, " Worl")
+                .expectStatus().isNoContent();
+        appendChunk(session.getId(), 10, "d")
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals(UploadSessionRestControllerV1.UPLOAD_OFFSET, "11");
+
+        FileDto fileDto = webTestClient
+                .post()
+                .uri(UploadSessionRestControllerV1.ROOT_URL + "/{sessionId}/complete", session.getId())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(FileDto.class).returnResult().getResponseBody();
+
+        assertEquals("resumable.txt", fileDto.getFileName());
+        assertEquals(UploadStatus.STORED, fileDto.getUploadStatus());
+    }
+
+    @Test
+    public void completeAgainAfterStorageCompletedUpload_200() {
+        // an earlier attempt completed the multipart upload in S3 but failed to register the file
+        Mockito.when(storageService.completeMultipartUpload(anyString(), eq("testUploadId"), any()))
+                .thenReturn(Mono.error(S3Exception.builder().statusCode(404).message("NoSuchUpload").build()));
+        Mockito.when(storageService.getObjectSize(anyString())).thenReturn(Mono.just((long) CONTENT.length()));
+
+        UploadSessionDto session = createSession();
+        appendChunk(session.getId(), 0, "Hello").expectStatus().isNoContent();
+        appendChunk(session.getId(), 5, " Worl").expectStatus().isNoContent();
+        appendChunk(session.getId(), 10, "d").expectStatus().isNoContent();
+
+        FileDto fileDto = complete(session.getId());
+
+        assertEquals(UploadStatus.STORED, fileDto.getUploadStatus());
+        assertEquals(UploadSessionStatus.COMPLETED, uploadSessionRepository.findById(session.getId()).block().getStatus());
+    }
+
+    @Test
+    public void completeAgainAfterCompletedSessionExpired_200() {
+        Mockito.when(storageService.completeMultipartUpload(anyString(), eq("testUploadId"), any())).thenReturn(Mono.empty());
+
+        UploadSessionDto session = createSession();
+        appendChunk(session.getId(), 0, "Hello").expectStatus().isNoContent();
+        appendChunk(session.getId(), 5, " Worl").expectStatus().isNoContent();
+        appendChunk(session.getId(), 10, "d").expectStatus().isNoContent();
+        FileDto completed = complete(session.getId());
+
+        UploadSession completedSession = uploadSessionRepository.findById(session.getId()).block();
+        uploadSessionRepository.save(completedSession.toBuilder().expiresAt(LocalDateTime.now().minusMinutes(1)).build()).block();
+
+        // the client did not see the response and completes again
+        assertEquals(completed.getId(), complete(session.getId()).getId());
+        Mockito.verify(storageService, Mockito.times(1)).completeMultipartUpload(anyString(), eq("testUploadId"), any());
+    }
+
+    @Test
+    public void appendChunkAfterLockTakenOver_409() {
+        UploadSessionDto session = createSession();
+        // the lock times out while the part is uploaded and another request takes the offset over
+        Mockito.doAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(4)
+                        .doOnNext(DataBufferUtils::release)
+                        .then(uploadSessionRepository.findById(session.getId()))
+                        .flatMap(current -> uploadSessionRepository.save(current.toBuilder()
+                                .lockedUntil(LocalDateTime.now().plusMinutes(10).truncatedTo(ChronoUnit.SECONDS))
+                                .build()))
+                        .thenReturn("staleETag"))
+                .when(storageService).uploadPart(anyString(), eq("testUploadId"), eq(1), anyLong(), any());
+
+        appendChunk(session.getId(), 0, "Hello")
+                .expectStatus().isEqualTo(409);
+
+        UploadSession current = uploadSessionRepository.findById(session.getId()).block();
+        assertEquals(0, current.getUploadOffset());
+        // the lock of the other request is left alone
+        assertNotNull(current.getLockedUntil());
+        assertEquals(0L, uploadSessionRepository.findParts(session.getId()).count().block());
+    }
+
+    @Test
+    public void sweepExpiredSessions_onlyExpiredOpenAborted() {
+        Mockito.when(storageService.abortMultipartUpload(anyString(), anyString())).thenReturn(Mono.empty());
+
+        UploadSessionDto expired = createSession();
+        UploadSessionDto live = createSession();
+        UploadSession expiredSession = uploadSessionRepository.findById(expired.getId()).block();
+        uploadSessionRepository.save(expiredSession.toBuilder().expiresAt(LocalDateTime.now().minusMinutes(1)).build()).block();
+
+        assertEquals(1L, resumableUploadService.sweepExpiredSessions().block());
+
+        assertEquals(UploadSessionStatus.ABORTED, uploadSessionRepository.findById(expired.getId()).block().getStatus());
+        assertEquals(UploadSessionStatus.OPEN, uploadSessionRepository.findById(live.getId()).block().getStatus());
+        Mockito.verify(storageService).abortMultipartUpload(expiredSession.getStorageKey(), "testUploadId");
+        // nothing left to sweep
+        assertEquals(0L, resumableUploadService.sweepExpiredSessions().block());
+        String liveStorageKey = uploadSessionRepository.findById(live.getId()).block().getStorageKey();
+        Mockito.verify(storageService, never()).abortMultipartUpload(eq(liveStorageKey), anyString());
+    }
+
+    @Test
+    public void completeIncompleteUpload_409() {
+        UploadSessionDto session = createSession();
+
+        appendChunk(session.getId(), 0, "Hello")
+                .expectStatus().isNoContent();
+
+        webTestClient
+                .post()
+                .uri(UploadSessionRestControllerV1.ROOT_URL + "/{sessionId}/complete", session.getId())
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    public void appendChunkOfWrongLength_400() {
+        UploadSessionDto session = createSession();
+
+        appendChunk(session.getId(), 0, "Hello World")
+                .expectStatus().isBadRequest();
+    }
+
+    private UploadSessionDto createSession() {
+        UploadSessionRequestDto request = new UploadSessionRequestDto();
+        request.setFileName("resumable.txt");
+        request.setUploadLength(CONTENT.length());
+
+        return webTestClient
+                .post()
+                .uri(UploadSessionRestControllerV1.ROOT_URL)
+                .header("Authorization", "Bearer " + bearerToken)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals(UploadSessionRestControllerV1.UPLOAD_OFFSET, "0")
+                .expectBody(UploadSessionDto.class).returnResult().getResponseBody();
+    }
+
+    private FileDto complete(Long sessionId) {
+        return webTestClient
+                .post()
+                .uri(UploadSessionRestControllerV1.ROOT_URL + "/{sessionId}/complete", sessionId)
+                .header("Authorization", "Bearer " + bearerToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(FileDto.class).returnResult().getResponseBody();
+    }
+
+    private WebTestClient.ResponseSpec appendChunk(Long sessionId, long offset, String chunk) {
+        return webTestClient
+                .patch()
+                .uri(UploadSessionRestControllerV1.ROOT_URL + "/{sessionId}", sessionId)
+                .header("Authorization", "Bearer " + bearerToken)
+                .header(UploadSessionRestControllerV1.UPLOAD_OFFSET, String.valueOf(offset))
+                .bodyValue(chunk.getBytes(StandardCharsets.UTF_8))
+                .exchange();
+    }
+}
@@ -8,6 +8,7 @@ import com.updmtProjects.webfluxsecurity.dto.UserRequestDto;
 import com.updmtProjects.webfluxsecurity.dto.UserUpdateDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
 import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.repository.EventRepository;
@@ -48,10 +49,10 @@ public class UserControllerV1IntegrationTest extends AbstractIntegrationTest {
 
     @BeforeEach
     public void beforeEach() {
-        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUser", passwordEncoder.encode("testPassword"), UserRole.ADMIN, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
 
-        File testFile = new File(null, "testFileName", "testStorageLink", null, false);
+        File testFile = new File(null, "testFileName", "testFileName", "testStorageLink", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
 
         Event testEvent = new Event(null, null, testFile.getId(), testUser.getId());
@@ -139,7 +140,7 @@ public class UserControllerV1IntegrationTest extends AbstractIntegrationTest {
 
         User currentUser = userRepository.findByUsername(username).block();
 
-        File testFile = new File(null, "testFileName2", "testStorageLink2", null, false);
+        File testFile = new File(null, "testFileName2", "testFileName2", "testStorageLink2", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
         Event testEvent = new Event(null, null, testFile.getId(), currentUser.getId());
         eventRepository.save(testEvent).block();
@@ -165,7 +166,7 @@ public class UserControllerV1IntegrationTest extends AbstractIntegrationTest {
         String username = "testUserRoleUser";
         String password = "testPassword";
 
-        User testUser = new User(null, "testUserRoleUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false);
+        User testUser = new User(null, "testUserRoleUser", passwordEncoder.encode("testPassword"), UserRole.USER, "Test", "User", true, null, null, false, 0);
         userRepository.save(testUser).block();
 
         TokenDetails tokenDetails = securityService.authenticate(username, password).block();
@@ -187,9 +188,9 @@ public class UserControllerV1IntegrationTest extends AbstractIntegrationTest {
         TokenDetails tokenDetails = securityService.authenticate(username, password).block();
         String bearerToken = tokenDetails.getToken();
 
-        User testUser = new User(null, "testUserSecond", passwordEncoder.encode("testPasswordSecond"), UserRole.USER, "TestSecond", "UserSecond", true, null, null, false);
+        User testUser = new User(null, "testUserSecond", passwordEncoder.encode("testPasswordSecond"), UserRole.USER, "TestSecond", "UserSecond", true, null, null, false, 0);
         userRepository.save(testUser).block();
-        File testFile = new File(null, "testFileName2", "testStorageLink2", null, false);
+        File testFile = new File(null, "testFileName2", "testFileName2", "testStorageLink2", null, false, UploadStatus.STORED, 0, null, null, null, null);
         fileRepository.save(testFile).block();
         Event testEvent = new Event(null, null, testFile.getId(), testUser.getId());
         eventRepository.save(testEvent).block();
@@ -301,7 +302,7 @@ public class UserControllerV1IntegrationTest extends AbstractIntegrationTest {
         String usernameAdmin = "testUser";
         String testUserPassword = "testPasswordSecond";
 
-        User testUser = new User(null, "testUserSecond", passwordEncoder.encode(testUserPassword), UserRole.USER, "TestSecond", "UserSecond", true, null, null, false);
+        User testUser = new User(null, "testUserSecond", passwordEncoder.encode(testUserPassword), UserRole.USER, "TestSecond", "UserSecond", true, null, null, false, 0);
         userRepository.save(testUser).block();
 
         TokenDetails tokenDetails = securityService.authenticate(testUser.getUsername(), testUserPassword).block();
@@ -0,0 +1,55 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.managementServiceTest;
+
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
+import com.updmtProjects.webfluxsecurity.service.EventFeed;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class EventFeedTest {
+
+    @Test
+    void publishToSubscribedUser_onlyTheirEventsReceived() {
+        EventFeed eventFeed = new EventFeed(16);
+
+        StepVerifier.create(eventFeed.subscribe(1L))
+                .then(() -> {
+                    eventFeed.publish(2L, eventDto(1L));
+                    eventFeed.publish(1L, eventDto(2L));
+                })
+                .expectNextMatches(event -> event.getId().equals(2L))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // the feed of the user is dropped with its last subscriber
+        assertFalse(eventFeed.hasSubscribers(1L));
+    }
+
+    @Test
+    void publishBeyondBufferOfSlowSubscriber_disconnected() {
+        EventFeed eventFeed = new EventFeed(2);
+
+        StepVerifier.create(eventFeed.subscribe(1L), 0)
+                .then(() -> {
+                    for (long id = 1; id <= 3; id++) {
+                        eventFeed.publish(1L, eventDto(id));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(event -> true)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+
+        assertFalse(eventFeed.hasSubscribers(1L));
+    }
+
+    private static EventDto eventDto(Long id) {
+        EventDto eventDto = new EventDto();
+        eventDto.setId(id);
+        return eventDto;
+    }
+}
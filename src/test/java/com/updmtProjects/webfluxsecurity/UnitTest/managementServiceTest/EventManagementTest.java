@@ -9,18 +9,22 @@ import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
 import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
+import com.updmtProjects.webfluxsecurity.service.EventFeed;
 import com.updmtProjects.webfluxsecurity.service.EventManagementService;
 import com.updmtProjects.webfluxsecurity.service.EventService.EventService;
-import com.updmtProjects.webfluxsecurity.service.FileManagementService;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
+import org.springframework.test.context.TestPropertySource;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 import static org.mockito.Mockito.doReturn;
@@ -30,6 +34,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
+// replay pages of two events, the feed tests read more than one
+@TestPropertySource(properties = "events.feed.replay-page-size=2")
 public class EventManagementTest extends AbstractIntegrationTest {
 
     @SpyBean
@@ -38,8 +44,8 @@ public class EventManagementTest extends AbstractIntegrationTest {
     @MockBean
     private EventService eventService;
 
-    @MockBean
-    private FileManagementService fileManagementService;
+    @Autowired
+    private EventFeed eventFeed;
 
     @Test
     void getEventDependingOnUserRoleTest_ok() {
@@ -88,8 +94,12 @@ public class EventManagementTest extends AbstractIntegrationTest {
         fileGetDto.setDeleted(file.isDeleted());
         fileGetDto.setStorageLink(presignedUrl);
 
-        when(eventService.getEventById(eventId)).thenReturn(Mono.just(event));
-        when(fileManagementService.getFile(fileId)).thenReturn(Mono.just(fileGetDto));
+        EventDto eventDto = new EventDto();
+        eventDto.setId(event.getId());
+        eventDto.setCreated(event.getCreated());
+        eventDto.setFileGetDto(fileGetDto);
+
+        when(eventService.getEventWithFileById(eventId)).thenReturn(Mono.just(eventDto));
 
         Mono<EventDto> eventDtoMono = eventManagementService.getEventById(eventId);
 
@@ -128,8 +138,12 @@ public class EventManagementTest extends AbstractIntegrationTest {
         fileGetDto.setDeleted(file.isDeleted());
         fileGetDto.setStorageLink(presignedUrl);
 
-        when(eventService.getEventById(eventId)).thenReturn(Mono.just(event));
-        when(fileManagementService.getFile(fileId)).thenReturn(Mono.just(fileGetDto));
+        EventDto eventDto = new EventDto();
+        eventDto.setId(event.getId());
+        eventDto.setCreated(event.getCreated());
+        eventDto.setFileGetDto(fileGetDto);
+
+        when(eventService.getEventWithFileById(eventId)).thenReturn(Mono.just(eventDto));
 
         Mono<EventDto> eventDtoMono = eventManagementService.getEventById(eventId);
 
@@ -215,8 +229,12 @@ public class EventManagementTest extends AbstractIntegrationTest {
         fileGetDto1.setCreated(LocalDateTime.now());
         fileGetDto1.setStorageLink(presignedUrl1);
 
-        when(eventService.getAllEvents()).thenReturn(Flux.just(event1));
-        when(fileManagementService.getFile(fileId1)).thenReturn(Mono.just(fileGetDto1));
+        EventDto eventDto1 = new EventDto();
+        eventDto1.setId(event1.getId());
+        eventDto1.setCreated(event1.getCreated());
+        eventDto1.setFileGetDto(fileGetDto1);
+
+        when(eventService.getAllEventsWithFile()).thenReturn(Flux.just(eventDto1));
 
         Flux<EventDto> eventDtoFlux = eventManagementService.getAllEvents();
 
@@ -231,7 +249,7 @@ public class EventManagementTest extends AbstractIntegrationTest {
 
     @Test
     void getAllEventsTest_noEventsFound() {
-        when(eventService.getAllEvents()).thenReturn(Flux.empty());
+        when(eventService.getAllEventsWithFile()).thenReturn(Flux.empty());
 
         Flux<EventDto> eventDtoFlux = eventManagementService.getAllEvents();
 
@@ -332,8 +350,12 @@ public class EventManagementTest extends AbstractIntegrationTest {
         fileGetDto.setCreated(LocalDateTime.now());
         fileGetDto.setStorageLink(presignedUrl);
 
-        when(eventService.findByUserId(userId)).thenReturn(Flux.just(event));
-        when(fileManagementService.getFile(fileId)).thenReturn(Mono.just(fileGetDto));
+        EventDto eventDto = new EventDto();
+        eventDto.setId(event.getId());
+        eventDto.setCreated(event.getCreated());
+        eventDto.setFileGetDto(fileGetDto);
+
+        when(eventService.findWithFileByUserId(userId)).thenReturn(Flux.just(eventDto));
 
         Flux<EventDto> resultFlux = eventManagementService.getEventsByUserId(userId);
 
@@ -349,7 +371,7 @@ public class EventManagementTest extends AbstractIntegrationTest {
     void getEventsByUserId_EventsNotFound() {
         Long userId = 2L;
 
-        when(eventService.findByUserId(userId)).thenReturn(Flux.empty());
+        when(eventService.findWithFileByUserId(userId)).thenReturn(Flux.empty());
 
         Flux<EventDto> resultFlux = eventManagementService.getEventsByUserId(userId);
 
@@ -360,4 +382,96 @@ public class EventManagementTest extends AbstractIntegrationTest {
                 .verify();
     }
 
+    @Test
+    void getUserEventFeedWithLastEventIdBehindSeveralPages_allMissedEventsThenLive() {
+        Long userId = 1L;
+        Authentication authenticationMock = userAuthentication(userId);
+
+        when(eventService.findWithFileByUserIdPage(userId, 5L, 2)).thenReturn(Flux.just(eventDto(6L), eventDto(7L)));
+        when(eventService.findWithFileByUserIdPage(userId, 7L, 2)).thenReturn(Flux.just(eventDto(8L), eventDto(9L)));
+        when(eventService.findWithFileByUserIdPage(userId, 9L, 2)).thenReturn(Flux.just(eventDto(10L)));
+
+        Flux<Long> eventIds = eventManagementService.getUserEventFeed(authenticationMock, userId, 5L)
+                .filter(event -> event.data() != null)
+                .map(event -> Long.valueOf(event.id()));
+
+        StepVerifier.create(eventIds)
+                .expectNext(6L, 7L, 8L, 9L, 10L)
+                .then(() -> {
+                    // the last replayed event is also published live, it is not delivered twice
+                    eventFeed.publish(userId, eventDto(10L));
+                    eventFeed.publish(userId, eventDto(11L));
+                })
+                .expectNext(11L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void getUserEventFeedWithEventPublishedDuringReplay_deliveredOnce() {
+        Long userId = 1L;
+        Authentication authenticationMock = userAuthentication(userId);
+
+        when(eventService.findWithFileByUserIdPage(userId, 5L, 2)).thenReturn(Flux.just(eventDto(6L), eventDto(7L)));
+        // event 8 commits and is published live while the replay still reads it from the database;
+        // the delay lets the feed subscription, made right after the replay's, take place first
+        when(eventService.findWithFileByUserIdPage(userId, 7L, 2)).thenReturn(Mono.delay(Duration.ofMillis(100))
+                .thenMany(Flux.defer(() -> {
+                    eventFeed.publish(userId, eventDto(8L));
+                    return Flux.just(eventDto(8L));
+                })));
+
+        Flux<Long> eventIds = eventManagementService.getUserEventFeed(authenticationMock, userId, 5L)
+                .filter(event -> event.data() != null)
+                .map(event -> Long.valueOf(event.id()));
+
+        StepVerifier.create(eventIds)
+                .expectNext(6L, 7L, 8L)
+                .then(() -> eventFeed.publish(userId, eventDto(9L)))
+                .expectNext(9L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void getUserEventFeedWithoutLastEventId_onlyLiveEvents() {
+        Long userId = 1L;
+        Authentication authenticationMock = userAuthentication(userId);
+
+        Flux<ServerSentEvent<EventDto>> feed = eventManagementService.getUserEventFeed(authenticationMock, userId, null)
+                .filter(event -> event.data() != null);
+
+        StepVerifier.create(feed)
+                .then(() -> eventFeed.publish(userId, eventDto(1L)))
+                .expectNextMatches(event -> "1".equals(event.id()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void getUserEventFeedOfAnotherUserHavingRoleUser_accessDenied() {
+        Authentication authenticationMock = userAuthentication(1L);
+
+        StepVerifier.create(eventManagementService.getUserEventFeed(authenticationMock, 2L, null))
+                .expectError(CustomAccessDeniedException.class)
+                .verify();
+    }
+
+    private static Authentication userAuthentication(Long userId) {
+        Authentication authenticationMock = mock(Authentication.class);
+
+        CustomPrincipal customPrincipal = new CustomPrincipal();
+        customPrincipal.setRole(String.valueOf(UserRole.USER));
+        customPrincipal.setId(userId);
+        customPrincipal.setName("UserTest");
+
+        when(authenticationMock.getPrincipal()).thenReturn(customPrincipal);
+        return authenticationMock;
+    }
+
+    private static EventDto eventDto(Long id) {
+        EventDto eventDto = new EventDto();
+        eventDto.setId(id);
+        return eventDto;
+    }
 }
@@ -5,17 +5,21 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.updmtProjects.webfluxsecurity.AbstractIntegrationTest;
+import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.dto.FileDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
 import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
+import com.updmtProjects.webfluxsecurity.mapper.FileMapper;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
 import com.updmtProjects.webfluxsecurity.service.EventService.EventService;
 import com.updmtProjects.webfluxsecurity.service.FileManagementService;
 import com.updmtProjects.webfluxsecurity.service.FileService.FileService;
-import com.updmtProjects.webfluxsecurity.service.StorageService;
+import com.updmtProjects.webfluxsecurity.service.FileUploadPipeline;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
@@ -27,6 +31,7 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDateTime;
+import java.util.function.Function;
 
 @SpringBootTest
 public class FileManagementServiceTest extends AbstractIntegrationTest {
@@ -34,11 +39,13 @@ public class FileManagementServiceTest extends AbstractIntegrationTest {
     @SpyBean
     private FileManagementService fileManagementService;
     @MockBean
-    private StorageService storageService;
+    private FileUploadPipeline fileUploadPipeline;
     @MockBean
     private FileService fileService;
     @MockBean
     private EventService eventService;
+    @Autowired
+    private FileMapper fileMapper;
 
     @Test
     void uploadAndRegisterFile_ok() {
@@ -55,14 +62,24 @@ public class FileManagementServiceTest extends AbstractIntegrationTest {
         event.setUserId(1L);
 
         when(fileService.createFile(any(File.class))).thenReturn(Mono.just(file));
-        when(storageService.uploadFile(any(FilePart.class))).thenReturn(Mono.just("File uploaded"));
         when(eventService.createEvent(any(Event.class))).thenReturn(Mono.just(event));
+        // the pipeline registers the file once the content is staged
+        when(fileUploadPipeline.upload(any(FilePart.class), any())).thenAnswer(invocation ->
+                invocation.<Function<FileUploadPipeline.StagedContent, Mono<File>>>getArgument(1)
+                        .apply(new FileUploadPipeline.StagedContent(filePartMock, "testContentHash", "testNode")));
 
         Mono<FileDto> result = fileManagementService.uploadAndRegisterFile(filePartMock, 1L);
 
         StepVerifier.create(result)
                 .assertNext(uploadDto -> assertEquals("testFile.txt", uploadDto.getFileName()))
                 .verifyComplete();
+
+        verify(fileService).createFile(argThat(createdFile -> createdFile.getUploadStatus() == UploadStatus.PENDING
+                && createdFile.getContentHash().equals("testContentHash")
+                && createdFile.getStagedOn().equals("testNode")
+                && createdFile.getStorageKey().matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f-]{36}")
+                && createdFile.getStorageLink().endsWith("/" + createdFile.getStorageKey())));
+        verify(eventService).createEvent(any(Event.class));
     }
 
     @Test
@@ -259,8 +276,12 @@ public class FileManagementServiceTest extends AbstractIntegrationTest {
                 .deleted(false)
                 .build();
 
-        when(eventService.findByUserId(userId)).thenReturn(Flux.just(event));
-        when(fileService.getFileById(event.getFileId())).thenReturn(Mono.just(file));
+        EventDto eventDto = new EventDto();
+        eventDto.setId(event.getId());
+        eventDto.setCreated(event.getCreated());
+        eventDto.setFileGetDto(fileMapper.mapToFileDto(file));
+
+        when(eventService.findWithFileByUserId(userId)).thenReturn(Flux.just(eventDto));
 
         Flux<FileDto> fileGetDtoFlux = fileManagementService.getUserFilesDependingOnRole(authenticationMock, userId);
 
@@ -0,0 +1,227 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.managementServiceTest;
+
+import com.updmtProjects.webfluxsecurity.entity.File;
+import com.updmtProjects.webfluxsecurity.entity.UploadStatus;
+import com.updmtProjects.webfluxsecurity.exception.ServiceUnavailableException;
+import com.updmtProjects.webfluxsecurity.repository.FileRepository;
+import com.updmtProjects.webfluxsecurity.service.FileUploadPipeline;
+import com.updmtProjects.webfluxsecurity.service.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class FileUploadPipelineTest {
+
+    // SHA-256 of "Hello, world!"
+    private static final String CONTENT_HASH = "315f5bdb76d078c43b8ac0064e4a0164612b1fce77c869345bfc94c75894edd3";
+    private static final String NODE_ID = "testNode";
+
+    @TempDir
+    Path stagingDir;
+
+    @Mock
+    private StorageService storageService;
+    @Mock
+    private FileRepository fileRepository;
+
+    private FileUploadPipeline fileUploadPipeline;
+
+    @BeforeEach
+    void beforeEach() {
+        fileUploadPipeline = new FileUploadPipeline(storageService, fileRepository, stagingDir, NODE_ID,
+                1, Duration.ofSeconds(5), Duration.ofMinutes(1), Duration.ofMinutes(15), 5, 20, 1);
+    }
+
+    @Test
+    void uploadNewContent_transferredAndStored() {
+        when(fileRepository.findStoredByContentHash(CONTENT_HASH)).thenReturn(Mono.empty());
+        when(storageService.uploadFile(eq("3f/a1/testKey"), eq("testFile.txt"), any())).thenReturn(Mono.just("File uploaded: testFile.txt"));
+        when(fileRepository.updateUploadStatus(1L, UploadStatus.STORED.name())).thenReturn(Mono.just(1));
+
+        AtomicReference<FileUploadPipeline.StagedContent> registered = new AtomicReference<>();
+        StepVerifier.create(fileUploadPipeline.upload(filePart(), staged -> {
+                    registered.set(staged);
+                    return Mono.just(pendingFile());
+                }))
+                .assertNext(file -> assertEquals(UploadStatus.STORED, file.getUploadStatus()))
+                .verifyComplete();
+
+        assertEquals(CONTENT_HASH, registered.get().contentHash());
+        // written with the row, so the upload is never left without a node to retry or give it up
+        assertEquals(NODE_ID, registered.get().stagedOn());
+        assertFalse(Files.exists(stagingDir.resolve("1")));
+    }
+
+    @Test
+    void uploadKnownContent_storedObjectReused() {
+        File stored = File.builder()
+                .id(2L)
+                .storageKey("0b/7c/storedKey")
+                .storageLink("https://storage.yandexcloud.net/webflux/0b/7c/storedKey")
+                .uploadStatus(UploadStatus.STORED)
+                .build();
+        when(fileRepository.findStoredByContentHash(CONTENT_HASH)).thenReturn(Mono.just(stored));
+        when(fileRepository.markStored(1L, stored.getStorageKey(), stored.getStorageLink())).thenReturn(Mono.just(1));
+
+        StepVerifier.create(fileUploadPipeline.upload(filePart(), staged -> Mono.just(pendingFile())))
+                .assertNext(file -> {
+                    assertEquals(UploadStatus.STORED, file.getUploadStatus());
+                    assertEquals(stored.getStorageKey(), file.getStorageKey());
+                    assertEquals(stored.getStorageLink(), file.getStorageLink());
+                })
+                .verifyComplete();
+
+        verify(storageService, never()).uploadFile(anyString(), anyString(), any());
+        assertFalse(Files.exists(stagingDir.resolve("1")));
+    }
+
+    @Test
+    void uploadFails_markedFailedAndStagedFileKept() {
+        when(fileRepository.findStoredByContentHash(CONTENT_HASH)).thenReturn(Mono.empty());
+        when(storageService.uploadFile(eq("3f/a1/testKey"), eq("testFile.txt"), any())).thenReturn(Mono.error(new IllegalStateException("S3 is down")));
+        when(fileRepository.updateUploadStatus(1L, UploadStatus.FAILED.name())).thenReturn(Mono.just(1));
+
+        StepVerifier.create(fileUploadPipeline.upload(filePart(), staged -> Mono.just(pendingFile())))
+                .assertNext(file -> assertEquals(UploadStatus.FAILED, file.getUploadStatus()))
+                .verifyComplete();
+
+        // kept for the retry worker
+        assertTrue(Files.exists(stagingDir.resolve("1")));
+    }
+
+    @Test
+    void uploadWithStagingDirectoryGone_givenUpAndReportedFailed() throws Exception {
+        when(fileRepository.giveUpUpload(1L, UploadStatus.PENDING.name(), 1, 5)).thenReturn(Mono.just(1));
+
+        StepVerifier.create(fileUploadPipeline.upload(filePart(), staged -> Mono.fromCallable(() -> {
+                    // the temporary file is already written, only the move into place fails
+                    Files.createDirectory(stagingDir.resolve("1"));
+                    Files.writeString(stagingDir.resolve("1").resolve("occupied"), "occupied");
+                    return pendingFile();
+                })))
+                .assertNext(file -> assertEquals(UploadStatus.FAILED, file.getUploadStatus()))
+                .verifyComplete();
+
+        verify(storageService, never()).uploadFile(anyString(), anyString(), any());
+        verify(fileRepository, never()).findStoredByContentHash(anyString());
+    }
+
+    @Test
+    void uploadAllMoreFilesThanCapacityOnIdleNode_allStored() {
+        File second = pendingFile().toBuilder().id(2L).fileName("secondTestFile.txt").storageKey("ab/cd/secondKey").build();
+        when(fileRepository.findStoredByContentHash(CONTENT_HASH)).thenReturn(Mono.empty());
+        when(storageService.uploadFile(eq("3f/a1/testKey"), eq("testFile.txt"), any())).thenReturn(Mono.just("File uploaded: 3f/a1/testKey"));
+        when(storageService.uploadFile(eq("ab/cd/secondKey"), eq("secondTestFile.txt"), any())).thenReturn(Mono.just("File uploaded: ab/cd/secondKey"));
+        when(fileRepository.updateUploadStatus(1L, UploadStatus.STORED.name())).thenReturn(Mono.just(1));
+        when(fileRepository.updateUploadStatus(2L, UploadStatus.STORED.name())).thenReturn(Mono.just(1));
+        FilePart firstPart = filePart();
+        when(firstPart.filename()).thenReturn("testFile.txt");
+        FilePart secondPart = filePart();
+        when(secondPart.filename()).thenReturn("secondTestFile.txt");
+
+        // max-in-flight is 1, the batch spools and transfers one file at a time with a single permit
+        AtomicReference<List<FileUploadPipeline.StagedContent>> registered = new AtomicReference<>();
+        StepVerifier.create(fileUploadPipeline.uploadAll(List.of(firstPart, secondPart), staged -> {
+                    registered.set(staged);
+                    return Flux.just(pendingFile(), second);
+                }))
+                .assertNext(outcome -> {
+                    assertEquals("testFile.txt", outcome.fileName());
+                    assertEquals(UploadStatus.STORED, outcome.file().getUploadStatus());
+                })
+                .assertNext(outcome -> {
+                    assertEquals("secondTestFile.txt", outcome.fileName());
+                    assertEquals(UploadStatus.STORED, outcome.file().getUploadStatus());
+                })
+                .verifyComplete();
+
+        assertEquals(2, registered.get().size());
+        assertFalse(Files.exists(stagingDir.resolve("1")));
+        assertFalse(Files.exists(stagingDir.resolve("2")));
+    }
+
+    @Test
+    void uploadAllWhileCapacityTaken_rejectedAsWhole() {
+        // a single upload waiting for its registration holds the only permit
+        StepVerifier.create(fileUploadPipeline.upload(filePart(), staged -> Mono.never()))
+                .expectSubscription()
+                .then(() -> StepVerifier.create(fileUploadPipeline.uploadAll(List.of(mock(FilePart.class)), staged -> Flux.empty()))
+                        .expectError(ServiceUnavailableException.class)
+                        .verify())
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void createWithBatchConcurrencyAboveMaxInFlight_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> new FileUploadPipeline(storageService, fileRepository, stagingDir, NODE_ID,
+                1, Duration.ofSeconds(5), Duration.ofMinutes(1), Duration.ofMinutes(15), 5, 20, 2));
+    }
+
+    @Test
+    void retryWithStagedContentGone_givenUp() {
+        File failed = pendingFile().toBuilder().uploadStatus(UploadStatus.FAILED).build();
+        when(fileRepository.findRetryableUploads(eq(NODE_ID), eq(5), any(), eq(20))).thenReturn(Flux.just(failed));
+        when(fileRepository.giveUpUpload(1L, UploadStatus.FAILED.name(), 1, 5)).thenReturn(Mono.just(1));
+        FileUploadPipeline retryingPipeline = new FileUploadPipeline(storageService, fileRepository, stagingDir, NODE_ID,
+                1, Duration.ofSeconds(5), Duration.ofMillis(10), Duration.ofMinutes(15), 5, 20, 1);
+
+        retryingPipeline.startRetrying();
+        try {
+            verify(fileRepository, timeout(5_000).atLeastOnce()).giveUpUpload(1L, UploadStatus.FAILED.name(), 1, 5);
+        } finally {
+            retryingPipeline.stopRetrying();
+        }
+        verify(fileRepository, never()).claimUpload(any(), any(), anyInt(), any());
+    }
+
+    private static FilePart filePart() {
+        FilePart filePart = mock(FilePart.class);
+        when(filePart.content()).thenReturn(Flux.just(
+                DefaultDataBufferFactory.sharedInstance.wrap("Hello, ".getBytes(StandardCharsets.UTF_8)),
+                DefaultDataBufferFactory.sharedInstance.wrap("world!".getBytes(StandardCharsets.UTF_8))));
+        return filePart;
+    }
+
+    private static File pendingFile() {
+        return File.builder()
+                .id(1L)
+                .fileName("testFile.txt")
+                .storageKey("3f/a1/testKey")
+                .storageLink("https://storage.yandexcloud.net/webflux/3f/a1/testKey")
+                .uploadStatus(UploadStatus.PENDING)
+                .uploadAttempts(1)
+                .contentHash(CONTENT_HASH)
+                .build();
+    }
+}
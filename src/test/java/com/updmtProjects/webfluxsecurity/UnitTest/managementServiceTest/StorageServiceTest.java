@@ -1,47 +1,90 @@
 package com.updmtProjects.webfluxsecurity.UnitTest.managementServiceTest;
 
+import com.updmtProjects.webfluxsecurity.exception.RangeNotSatisfiableException;
 import com.updmtProjects.webfluxsecurity.service.StorageService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.core.async.SdkPublisher;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class StorageServiceTest {
 
+    private static final String STORAGE_KEY = "3f/a1/testKey";
+
     @InjectMocks
     private StorageService storageService;
 
     @Mock
     private S3AsyncClient s3AsyncClient;
 
+    @Mock
+    private S3Presigner s3Presigner;
+
+    @BeforeEach
+    void beforeEach() {
+        ReflectionTestUtils.setField(storageService, "bucketName", "testBucket");
+        ReflectionTestUtils.setField(storageService, "partSize", DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(storageService, "concurrency", 2);
+        ReflectionTestUtils.setField(storageService, "partRetries", 1);
+        ReflectionTestUtils.setField(storageService, "retryBackoff", Duration.ofMillis(1));
+    }
+
     @Test
     void uploadFile_ok() {
 
-        //мок FilePart
-        FilePart filePartMock = mock(FilePart.class);
-        when(filePartMock.filename()).thenReturn("testFile.txt");
         DataBuffer dataBuffer = new DefaultDataBufferFactory().wrap("Hello, world!".getBytes(StandardCharsets.UTF_8));
         Flux<DataBuffer> contentFlux = Flux.just(dataBuffer);
-        when(filePartMock.content()).thenReturn(contentFlux);
 
         //мок S3AsyncClient
         PutObjectResponse response = PutObjectResponse.builder().build();
@@ -49,11 +92,149 @@ public class StorageServiceTest {
 
         when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(futureResponse);
 
-        Mono<String> resultMono = storageService.uploadFile(filePartMock);
+        Mono<String> resultMono = storageService.uploadFile(STORAGE_KEY, "testFile.txt", contentFlux);
 
         StepVerifier.create(resultMono)
-                .expectNext("File uploaded: testFile.txt")
+                .expectNext("File uploaded: " + STORAGE_KEY)
+                .verifyComplete();
+
+        // stored under the generated key, downloaded under the display name
+        verify(s3AsyncClient).putObject(argThat((PutObjectRequest request) -> request.key().equals(STORAGE_KEY)
+                        && request.contentDisposition().equals("inline; filename=\"testFile.txt\"")),
+                any(AsyncRequestBody.class));
+    }
+
+    @Test
+    void uploadFileLargerThanPart_multipartUpload() {
+        ReflectionTestUtils.setField(storageService, "partSize", DataSize.ofBytes(5));
+        DefaultDataBufferFactory dataBufferFactory = new DefaultDataBufferFactory();
+        Flux<DataBuffer> contentFlux = Flux.just(
+                dataBufferFactory.wrap("Hello, ".getBytes(StandardCharsets.UTF_8)),
+                dataBufferFactory.wrap("world!".getBytes(StandardCharsets.UTF_8)));
+
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("testUploadId").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("testETag").build()));
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        StepVerifier.create(storageService.uploadFile(STORAGE_KEY, "testFile.txt", contentFlux))
+                .expectNext("File uploaded: " + STORAGE_KEY)
                 .verifyComplete();
+
+        // 13 bytes in parts of 5: 5, 5, 3
+        verify(s3AsyncClient, times(3)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient).uploadPart(argThat((UploadPartRequest request) -> request.partNumber() == 3 && request.contentLength() == 3L),
+                any(AsyncRequestBody.class));
+        verify(s3AsyncClient).completeMultipartUpload(argThat((CompleteMultipartUploadRequest request) ->
+                request.multipartUpload().parts().size() == 3));
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
     }
 
+    @Test
+    void uploadFilePartFails_multipartUploadAborted() {
+        ReflectionTestUtils.setField(storageService, "partSize", DataSize.ofBytes(5));
+        DataBuffer dataBuffer = new DefaultDataBufferFactory().wrap("Hello, world!".getBytes(StandardCharsets.UTF_8));
+        Flux<DataBuffer> contentFlux = Flux.just(dataBuffer);
+
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("testUploadId").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Part upload failed")));
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        StepVerifier.create(storageService.uploadFile(STORAGE_KEY, "testFile.txt", contentFlux))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        // first attempt and one retry
+        verify(s3AsyncClient, times(2)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient).abortMultipartUpload(argThat((AbortMultipartUploadRequest request) ->
+                request.uploadId().equals("testUploadId")));
+        verify(s3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void uploadFileCancelled_multipartUploadAborted() {
+        ReflectionTestUtils.setField(storageService, "partSize", DataSize.ofBytes(5));
+        DataBuffer dataBuffer = new DefaultDataBufferFactory().wrap("Hello, world!".getBytes(StandardCharsets.UTF_8));
+        // the client stops sending after two full parts
+        Flux<DataBuffer> contentFlux = Flux.concat(Flux.just(dataBuffer), Flux.never());
+
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("testUploadId").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("testETag").build()));
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        StepVerifier.create(storageService.uploadFile(STORAGE_KEY, "testFile.txt", contentFlux))
+                .expectSubscription()
+                .thenAwait(Duration.ofMillis(100))
+                .thenCancel()
+                .verify();
+
+        verify(s3AsyncClient).abortMultipartUpload(argThat((AbortMultipartUploadRequest request) ->
+                request.uploadId().equals("testUploadId")));
+        verify(s3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void downloadFileRange_partialContentStreamed() {
+        GetObjectResponse response = GetObjectResponse.builder()
+                .contentLength(5L)
+                .contentRange("bytes 0-4/13")
+                // stored by the first uploader of the content
+                .contentDisposition("inline; filename=\"firstUpload.txt\"")
+                .eTag("testETag")
+                .build();
+        ResponsePublisher<GetObjectResponse> publisher = new ResponsePublisher<>(response,
+                SdkPublisher.adapt(Flux.just(ByteBuffer.wrap("Hello".getBytes(StandardCharsets.UTF_8)))));
+        doReturn(CompletableFuture.completedFuture(publisher))
+                .when(s3AsyncClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+
+        StepVerifier.create(storageService.downloadFile(STORAGE_KEY, "bytes=0-4", "testFile.txt")
+                        .flatMap(object -> {
+                            assertEquals("bytes 0-4/13", object.contentRange());
+                            assertEquals("attachment; filename=\"testFile.txt\"", object.contentDisposition());
+                            assertEquals(5L, object.contentLength());
+                            return DataBufferUtils.join(object.content().map(DefaultDataBufferFactory.sharedInstance::wrap));
+                        }))
+                .assertNext(content -> assertEquals("Hello", content.toString(StandardCharsets.UTF_8)))
+                .verifyComplete();
+
+        verify(s3AsyncClient).getObject(argThat((GetObjectRequest request) -> request.key().equals(STORAGE_KEY)
+                && request.range().equals("bytes=0-4")), any(AsyncResponseTransformer.class));
+    }
+
+    @Test
+    void downloadFileUnsatisfiableRange_rangeNotSatisfiable() {
+        doReturn(CompletableFuture.failedFuture(S3Exception.builder().statusCode(416).message("InvalidRange").build()))
+                .when(s3AsyncClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(HeadObjectResponse.builder().contentLength(13L).build()));
+
+        StepVerifier.create(storageService.downloadFile(STORAGE_KEY, "bytes=100-", "testFile.txt"))
+                .expectErrorMatches(e -> e instanceof RangeNotSatisfiableException rangeException
+                        && rangeException.getContentLength() == 13L)
+                .verify();
+    }
+
+    @Test
+    void presignDownload_signedWithDispositionOfFileName() throws Exception {
+        ReflectionTestUtils.setField(storageService, "presignedUrlTtl", Duration.ofMinutes(15));
+        PresignedGetObjectRequest presigned = mock(PresignedGetObjectRequest.class);
+        when(presigned.url()).thenReturn(new URL("https://storage.yandexcloud.net/testBucket/" + STORAGE_KEY));
+        when(presigned.expiration()).thenReturn(Instant.now().plus(Duration.ofMinutes(15)));
+        when(s3Presigner.presignGetObject(any(GetObjectPresignRequest.class))).thenReturn(presigned);
+
+        StepVerifier.create(storageService.presignDownload(STORAGE_KEY, "testFile.txt"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(s3Presigner).presignGetObject(argThat((GetObjectPresignRequest request) ->
+                request.getObjectRequest().responseContentDisposition().equals("attachment; filename=\"testFile.txt\"")));
+    }
 }
@@ -5,11 +5,14 @@ import com.updmtProjects.webfluxsecurity.dto.EventDto;
 import com.updmtProjects.webfluxsecurity.dto.UserResponseDto;
 import com.updmtProjects.webfluxsecurity.dto.UserUpdateDto;
 import com.updmtProjects.webfluxsecurity.entity.Event;
+import com.updmtProjects.webfluxsecurity.entity.File;
 import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.exception.CustomAccessDeniedException;
 import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
 import com.updmtProjects.webfluxsecurity.service.EventManagementService;
+import com.updmtProjects.webfluxsecurity.service.EventService.EventService;
+import com.updmtProjects.webfluxsecurity.service.FileService.FileService;
 import com.updmtProjects.webfluxsecurity.service.UserManagementService;
 import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
 import com.updmtProjects.webfluxsecurity.util.RoleConstants;
@@ -19,14 +22,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -38,6 +49,10 @@ public class UserManagementTest extends AbstractIntegrationTest {
     private UserService userService;
     @MockBean
     private EventManagementService eventManagementService;
+    @MockBean
+    private EventService eventService;
+    @MockBean
+    private FileService fileService;
 
     @Test
     void getUserInfo_ok() {
@@ -73,58 +88,79 @@ public class UserManagementTest extends AbstractIntegrationTest {
 
     @Test
     void getAllUserInfoTest_ok() {
-        Long firstEventId = 1L;
         Long firstUserId = 1L;
-
-        Long secondEventId = 2L;
         Long secondUserId = 2L;
+        Long thirdUserId = 3L;
 
         User firstUser = createUser();
         User secondUser = createUser();
         secondUser.setId(secondUserId);
         secondUser.setUsername("existingSecondUser");
-        secondUser.setFirstName("existingFirstNameUser");
-        secondUser.setLastName("existingLastNameUser");
+        User thirdUser = createUser();
+        thirdUser.setId(thirdUserId);
+        thirdUser.setUsername("existingThirdUser");
 
-        Event firstEventUser = new Event();
-        firstEventUser.setId(firstEventId);
-        firstEventUser.setCreated(LocalDateTime.now());
-        firstEventUser.setFileId(null);
-        firstEventUser.setUserId(firstUser.getId());
+        Event firstEventUser = new Event(1L, LocalDateTime.now(), 1L, firstUserId);
+        Event secondEventUser = new Event(2L, LocalDateTime.now(), 2L, secondUserId);
+        Event thirdEventUser = new Event(3L, LocalDateTime.now(), 1L, secondUserId);
 
-        EventDto firstEventUserDto = new EventDto();
-        firstEventUserDto.setId(firstEventUser.getId());
-        firstEventUserDto.setCreated(firstEventUser.getCreated());
-        firstEventUserDto.setFileGetDto(null);
+        File firstFile = File.builder().id(1L).fileName("firstFile.txt").build();
+        File secondFile = File.builder().id(2L).fileName("secondFile.txt").build();
 
-        Event secondEventUser = new Event();
-        secondEventUser.setId(secondEventId);
-        secondEventUser.setCreated(LocalDateTime.now());
-        secondEventUser.setFileId(null);
-        secondEventUser.setUserId(secondUser.getId());
+        when(userService.getAllUsers()).thenReturn(Flux.just(firstUser, secondUser, thirdUser));
+        when(eventService.findByUserIds(List.of(firstUserId, secondUserId, thirdUserId)))
+                .thenReturn(Flux.just(firstEventUser, secondEventUser, thirdEventUser));
+        when(fileService.getFilesByIds(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))))).thenReturn(Flux.just(firstFile, secondFile));
 
-        EventDto secondEventUserDto = new EventDto();
-        secondEventUserDto.setId(secondEventUser.getId());
-        secondEventUserDto.setCreated(secondEventUser.getCreated());
-        secondEventUserDto.setFileGetDto(null);
-
-        when(userService.getAllUsers()).thenReturn(Flux.just(firstUser, secondUser));
-        when(eventManagementService.getEventsByUserId(firstUserId)).thenReturn(Flux.just(firstEventUserDto));
-        when(eventManagementService.getEventsByUserId(secondUserId)).thenReturn(Flux.just(secondEventUserDto));
-
-        Flux<UserResponseDto> userResponseDtoMono = userManagementService.getAllUsersInfo();
+        Flux<UserResponseDto> userResponseDtoFlux = userManagementService.getAllUsersInfo();
 
         StepVerifier
-                .create(userResponseDtoMono)
+                .create(userResponseDtoFlux)
                 .expectNextMatches(userDto ->
-                        userDto.getId().equals(firstUser.getId()) &&
-                                userDto.getUsername().equals(firstUser.getUsername()) &&
-                                userDto.getEvents().get(0).equals(firstEventUserDto))
+                        userDto.getId().equals(firstUserId) &&
+                                userDto.getEvents().size() == 1 &&
+                                userDto.getEvents().get(0).getFileGetDto().getFileName().equals("firstFile.txt"))
                 .expectNextMatches(userDto ->
-                        userDto.getId().equals(secondUser.getId()) &&
-                                userDto.getUsername().equals(secondUser.getUsername()) &&
-                                userDto.getEvents().get(0).equals(secondEventUserDto))
+                        userDto.getId().equals(secondUserId) &&
+                                userDto.getEvents().size() == 2 &&
+                                userDto.getEvents().get(0).getFileGetDto().getFileName().equals("secondFile.txt") &&
+                                userDto.getEvents().get(1).getFileGetDto().getFileName().equals("firstFile.txt"))
+                .expectNextMatches(userDto ->
+                        userDto.getId().equals(thirdUserId) &&
+                                userDto.getEvents().isEmpty())
                 .verifyComplete();
+
+        // one query for the events and one for the files of the whole batch
+        verify(eventService).findByUserIds(any());
+        verify(fileService).getFilesByIds(any());
+    }
+
+    @Test
+    void getAllUserInfoWithManyFilesInBatch_filesLookedUpInBoundedChunks() {
+        User user = createUser();
+        List<Event> events = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new Event(id, LocalDateTime.now(), id, user.getId()))
+                .toList();
+
+        when(userService.getAllUsers()).thenReturn(Flux.just(user));
+        when(eventService.findByUserIds(List.of(user.getId()))).thenReturn(Flux.fromIterable(events));
+        when(fileService.getFilesByIds(any())).thenAnswer(invocation -> Flux.fromIterable(invocation.<Collection<Long>>getArgument(0))
+                .map(id -> File.builder().id(id).fileName("file" + id + ".txt").build()));
+
+        int infoBatchSize = (int) ReflectionTestUtils.getField(userManagementService, "infoBatchSize");
+        ReflectionTestUtils.setField(userManagementService, "infoBatchSize", 2);
+        try {
+            StepVerifier
+                    .create(userManagementService.getAllUsersInfo())
+                    .expectNextMatches(userDto -> userDto.getEvents().size() == 5
+                            && userDto.getEvents().stream().allMatch(eventDto -> eventDto.getFileGetDto() != null))
+                    .verifyComplete();
+        } finally {
+            ReflectionTestUtils.setField(userManagementService, "infoBatchSize", infoBatchSize);
+        }
+
+        // five files in lookups of at most two
+        verify(fileService, times(3)).getFilesByIds(argThat(ids -> ids.size() <= 2));
     }
 
     @Test
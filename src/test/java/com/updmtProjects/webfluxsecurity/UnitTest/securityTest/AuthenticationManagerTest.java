@@ -0,0 +1,127 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.entity.User;
+import com.updmtProjects.webfluxsecurity.entity.UserRole;
+import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
+import com.updmtProjects.webfluxsecurity.exception.UnauthorizedException;
+import com.updmtProjects.webfluxsecurity.security.AuthenticationManager;
+import com.updmtProjects.webfluxsecurity.security.CustomPrincipal;
+import com.updmtProjects.webfluxsecurity.security.PrincipalStatusCache;
+import com.updmtProjects.webfluxsecurity.security.TokenRevocationService;
+import com.updmtProjects.webfluxsecurity.security.TokenVersionRegistry;
+import com.updmtProjects.webfluxsecurity.service.UserService.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthenticationManagerTest {
+
+    private UserService userService;
+    private TokenVersionRegistry tokenVersionRegistry;
+    private AuthenticationManager authenticationManager;
+
+    @BeforeEach
+    void beforeEach() {
+        userService = mock(UserService.class);
+        TokenRevocationService tokenRevocationService = mock(TokenRevocationService.class);
+        when(tokenRevocationService.mightBeRevoked(any())).thenReturn(false);
+        tokenVersionRegistry = new TokenVersionRegistry(mock(DatabaseClient.class), Duration.ofSeconds(30));
+        PrincipalStatusCache principalStatusCache = new PrincipalStatusCache(Duration.ofMinutes(1), 100, new SimpleMeterRegistry());
+        authenticationManager = new AuthenticationManager(userService, principalStatusCache, tokenVersionRegistry, tokenRevocationService);
+    }
+
+    @Test
+    void authenticateWithCurrentVersion_ok() {
+        tokenVersionRegistry.update(1L, 2, true);
+        Authentication authentication = authentication(2);
+
+        StepVerifier.create(authenticationManager.authenticate(authentication))
+                .expectNext(authentication)
+                .verifyComplete();
+        verify(userService, never()).getUserById(any());
+    }
+
+    @Test
+    void authenticateWithStaleVersion_throwException() {
+        tokenVersionRegistry.update(1L, 2, true);
+
+        StepVerifier.create(authenticationManager.authenticate(authentication(1)))
+                .expectErrorMatches(e -> e instanceof UnauthorizedException && e.getMessage().equals("Token revoked"))
+                .verify();
+    }
+
+    @Test
+    void authenticateInactiveKnownUser_throwException() {
+        // the synced state of a user disabled in the database, without any version bump
+        tokenVersionRegistry.update(1L, 0, false);
+
+        StepVerifier.create(authenticationManager.authenticate(authentication(0)))
+                .expectErrorMatches(e -> e instanceof UnauthorizedException && e.getMessage().equals("User disabled"))
+                .verify();
+        verify(userService, never()).getUserById(any());
+    }
+
+    @Test
+    void authenticateDisabledUserNotKnownYet_throwException() {
+        when(userService.getUserById(1L)).thenReturn(Mono.just(user(false)));
+
+        StepVerifier.create(authenticationManager.authenticate(authentication(0)))
+                .expectErrorMatches(e -> e instanceof UnauthorizedException && e.getMessage().equals("User disabled"))
+                .verify();
+        // the loaded state is remembered, the next request is rejected without a lookup
+        StepVerifier.create(authenticationManager.authenticate(authentication(0)))
+                .expectError(UnauthorizedException.class)
+                .verify();
+        verify(userService).getUserById(1L);
+    }
+
+    @Test
+    void authenticateEnabledUserAfterDisabledWithoutVersionBump_ok() {
+        tokenVersionRegistry.update(1L, 0, false);
+        tokenVersionRegistry.update(1L, 0, true);
+        Authentication authentication = authentication(0);
+
+        StepVerifier.create(authenticationManager.authenticate(authentication))
+                .expectNext(authentication)
+                .verifyComplete();
+    }
+
+    @Test
+    void authenticateUnknownUser_throwException() {
+        when(userService.getUserById(1L)).thenReturn(Mono.error(new CustomNotFoundException("User not found")));
+
+        StepVerifier.create(authenticationManager.authenticate(authentication(0)))
+                .expectErrorMatches(e -> e instanceof UnauthorizedException && e.getMessage().equals("User not found"))
+                .verify();
+    }
+
+    private static Authentication authentication(int tokenVersion) {
+        CustomPrincipal principal = new CustomPrincipal(1L, "testUser", UserRole.USER.name(), tokenVersion,
+                "testJti", new Date(System.currentTimeMillis() + 60_000L));
+        return new UsernamePasswordAuthenticationToken(principal, null, List.of());
+    }
+
+    private static User user(boolean enabled) {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUser");
+        user.setRole(UserRole.USER);
+        user.setEnabled(enabled);
+        return user;
+    }
+}
@@ -0,0 +1,49 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.security.JtiBloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JtiBloomFilterTest {
+
+    private static final int EXPECTED_INSERTIONS = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    void mightContainInsertedIds_noFalseNegatives() {
+        JtiBloomFilter filter = new JtiBloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_RATE);
+        List<String> inserted = new ArrayList<>();
+        for (int i = 0; i < EXPECTED_INSERTIONS; i++) {
+            String jti = UUID.randomUUID().toString();
+            filter.put(jti);
+            inserted.add(jti);
+        }
+
+        assertTrue(inserted.stream().allMatch(filter::mightContain));
+    }
+
+    @Test
+    void mightContainOtherIdsAtCapacity_falsePositiveRateNearConfigured() {
+        JtiBloomFilter filter = new JtiBloomFilter(EXPECTED_INSERTIONS, FALSE_POSITIVE_RATE);
+        for (int i = 0; i < EXPECTED_INSERTIONS; i++) {
+            filter.put(UUID.randomUUID().toString());
+        }
+
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        double falsePositiveRate = (double) falsePositives / probes;
+        assertTrue(falsePositiveRate < FALSE_POSITIVE_RATE * 2,
+                "false positive rate " + falsePositiveRate + " is far above the configured " + FALSE_POSITIVE_RATE);
+    }
+}
@@ -0,0 +1,121 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.exception.UnauthorizedException;
+import com.updmtProjects.webfluxsecurity.security.JwtHandler;
+import com.updmtProjects.webfluxsecurity.security.JwtKeyManager;
+import com.updmtProjects.webfluxsecurity.security.VerifiedTokenCache;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JwtHandlerTest {
+
+    private static final String SECRET = "b5f59337a612a2a7dc07328f3e7d1a04722967c7f06df20a499a7d3f91ff2a7e";
+
+    private SimpleMeterRegistry meterRegistry;
+    private VerifiedTokenCache verifiedTokenCache;
+    private JwtKeyManager jwtKeyManager;
+    private JwtHandler jwtHandler;
+
+    @BeforeEach
+    void beforeEach() {
+        meterRegistry = new SimpleMeterRegistry();
+        verifiedTokenCache = new VerifiedTokenCache(100, meterRegistry);
+        jwtKeyManager = mock(JwtKeyManager.class);
+        jwtHandler = new JwtHandler(SECRET, verifiedTokenCache, jwtKeyManager);
+    }
+
+    @Test
+    void checkEs256TokenWithKnownKid_ok() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        when(jwtKeyManager.verificationKey("testKid")).thenReturn(keyPair.getPublic());
+
+        String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "testKid")
+                .setSubject("1")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000L))
+                .signWith(SignatureAlgorithm.ES256, keyPair.getPrivate())
+                .compact();
+
+        StepVerifier.create(jwtHandler.check(token))
+                .expectNextMatches(result -> result.claims.getSubject().equals("1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void checkEs256TokenWithUnknownKid_throwException() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+
+        String token = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "unknownKid")
+                .setSubject("1")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000L))
+                .signWith(SignatureAlgorithm.ES256, keyPair.getPrivate())
+                .compact();
+
+        StepVerifier.create(jwtHandler.check(token))
+                .expectError(UnauthorizedException.class)
+                .verify();
+    }
+
+    @Test
+    void checkSameTokenTwice_verifiedOnce() {
+        String token = createToken(SECRET);
+
+        StepVerifier.create(jwtHandler.check(token))
+                .expectNextMatches(result -> result.claims.getSubject().equals("1"))
+                .verifyComplete();
+        StepVerifier.create(jwtHandler.check(token))
+                .expectNextMatches(result -> result.claims.getSubject().equals("1"))
+                .verifyComplete();
+
+        assertEquals(1, verifiedTokenCache.missCount());
+        assertEquals(1, verifiedTokenCache.hitCount());
+        assertEquals(0.5, meterRegistry.get("security.token-cache.hit-ratio").gauge().value());
+    }
+
+    @Test
+    void checkTokenWithWrongSignature_throwException() {
+        String token = createToken("anotherSecret");
+
+        StepVerifier.create(jwtHandler.check(token))
+                .expectError(UnauthorizedException.class)
+                .verify();
+    }
+
+    @Test
+    void checkHs256TokenWithLegacySecretDisabled_throwException() {
+        JwtHandler es256OnlyHandler = new JwtHandler(null, verifiedTokenCache, jwtKeyManager);
+        String token = createToken(SECRET);
+
+        StepVerifier.create(es256OnlyHandler.check(token))
+                .expectError(UnauthorizedException.class)
+                .verify();
+    }
+
+    private String createToken(String secret) {
+        return Jwts.builder()
+                .setSubject("1")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000L))
+                .signWith(SignatureAlgorithm.HS256, Base64.getEncoder().encodeToString(secret.getBytes()))
+                .compact();
+    }
+}
@@ -0,0 +1,86 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.entity.JwtSigningKey;
+import com.updmtProjects.webfluxsecurity.repository.JwtSigningKeyRepository;
+import com.updmtProjects.webfluxsecurity.security.JwtKeyManager;
+import com.updmtProjects.webfluxsecurity.security.SigningKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Signature;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JwtKeyManagerTest {
+
+    private static final String ENCRYPTION_KEY = "u8rzTA5KkKg0sYc2cIq1tMSMvrEG2Y29tiSPJfj3ABw=";
+
+    @Test
+    void verificationKeyOfUnknownKidsRepeatedly_refreshedOncePerInterval() {
+        JwtSigningKeyRepository jwtSigningKeyRepository = mock(JwtSigningKeyRepository.class);
+        when(jwtSigningKeyRepository.findByExpiresAtAfter(any(LocalDateTime.class))).thenReturn(Flux.empty());
+        JwtKeyManager jwtKeyManager = new JwtKeyManager(jwtSigningKeyRepository, mock(R2dbcEntityTemplate.class),
+                Duration.ofDays(7), Duration.ofMinutes(5), Duration.ofMinutes(1), 900, ENCRYPTION_KEY);
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(jwtKeyManager.verificationKey("unknownKid" + i));
+        }
+
+        verify(jwtSigningKeyRepository, times(1)).findByExpiresAtAfter(any(LocalDateTime.class));
+    }
+
+    @Test
+    void signingKeyGenerated_storedEncryptedAndUsable() throws Exception {
+        List<JwtSigningKey> storedKeys = new ArrayList<>();
+        JwtSigningKeyRepository jwtSigningKeyRepository = mock(JwtSigningKeyRepository.class);
+        when(jwtSigningKeyRepository.findByExpiresAtAfter(any(LocalDateTime.class)))
+                .thenAnswer(invocation -> Flux.fromIterable(List.copyOf(storedKeys)));
+        R2dbcEntityTemplate r2dbcEntityTemplate = mock(R2dbcEntityTemplate.class);
+        when(r2dbcEntityTemplate.insert(any(JwtSigningKey.class))).thenAnswer(invocation -> {
+            storedKeys.add(invocation.getArgument(0));
+            return Mono.just(invocation.getArgument(0));
+        });
+        JwtKeyManager jwtKeyManager = new JwtKeyManager(jwtSigningKeyRepository, r2dbcEntityTemplate,
+                Duration.ofDays(7), Duration.ofMinutes(5), Duration.ofMinutes(1), 900, ENCRYPTION_KEY);
+
+        SigningKey signingKey = jwtKeyManager.signingKey().block();
+
+        assertEquals(1, storedKeys.size());
+        String storedPrivateKey = storedKeys.get(0).getPrivateKey();
+        assertTrue(storedPrivateKey.startsWith("aes-gcm:"));
+        assertFalse(storedPrivateKey.contains(Base64.getEncoder().encodeToString(signingKey.getPrivateKey().getEncoded())));
+
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(signingKey.getPrivateKey());
+        signer.update("payload".getBytes(StandardCharsets.UTF_8));
+        byte[] signature = signer.sign();
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        verifier.initVerify(jwtKeyManager.verificationKey(signingKey.getKid()));
+        verifier.update("payload".getBytes(StandardCharsets.UTF_8));
+        assertTrue(verifier.verify(signature));
+    }
+
+    @Test
+    void encryptionKeyOfWrongLength_rejected() {
+        assertThrows(IllegalStateException.class, () -> new JwtKeyManager(mock(JwtSigningKeyRepository.class),
+                mock(R2dbcEntityTemplate.class), Duration.ofDays(7), Duration.ofMinutes(5), Duration.ofMinutes(1), 900,
+                Base64.getEncoder().encodeToString(new byte[16])));
+    }
+}
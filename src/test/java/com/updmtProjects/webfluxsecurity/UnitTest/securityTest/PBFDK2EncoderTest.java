@@ -0,0 +1,144 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.exception.ServiceUnavailableException;
+import com.updmtProjects.webfluxsecurity.security.PBFDK2Encoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Scheduler;
+import reactor.test.StepVerifier;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PBFDK2EncoderTest {
+
+    private static final String SECRET = "testSecret";
+
+    private PBFDK2Encoder encoder;
+
+    @BeforeEach
+    void beforeEach() {
+        encoder = createEncoder(1000);
+    }
+
+    @AfterEach
+    void afterEach() {
+        encoder.destroy();
+    }
+
+    @Test
+    void encodeAndMatch_ok() {
+        String encodedPassword = encoder.encode("testPassword");
+
+        assertTrue(encodedPassword.startsWith("$pbkdf2-sha512$i=1000$"));
+        assertTrue(encoder.matches("testPassword", encodedPassword));
+        assertFalse(encoder.matches("wrongPassword", encodedPassword));
+        assertFalse(encoder.upgradeEncoding(encodedPassword));
+    }
+
+    @Test
+    void encodeSamePasswordTwice_differentSalts() {
+        assertNotEquals(encoder.encode("testPassword"), encoder.encode("testPassword"));
+    }
+
+    @Test
+    void matchLegacyHash_ok_needsUpgrade() throws Exception {
+        byte[] legacyHash = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512")
+                .generateSecret(new PBEKeySpec("testPassword".toCharArray(), SECRET.getBytes(), 64, 256))
+                .getEncoded();
+        String encodedPassword = Base64.getEncoder().encodeToString(legacyHash);
+
+        assertTrue(encoder.matches("testPassword", encodedPassword));
+        assertFalse(encoder.matches("wrongPassword", encodedPassword));
+        assertTrue(encoder.upgradeEncoding(encodedPassword));
+    }
+
+    @Test
+    void hashBelowMinIterations_needsUpgrade() {
+        PBFDK2Encoder cheapEncoder = createEncoder(500);
+        String encodedPassword = cheapEncoder.encode("testPassword");
+        cheapEncoder.destroy();
+
+        assertTrue(encoder.matches("testPassword", encodedPassword));
+        assertTrue(encoder.upgradeEncoding(encodedPassword));
+    }
+
+    @Test
+    void hashAboveMinIterationsFromSlowerNode_noUpgrade() {
+        // this node calibrated to more iterations than the node that created the hash
+        ReflectionTestUtils.setField(encoder, "currentIterations", 4000);
+        PBFDK2Encoder slowerNodeEncoder = createEncoder(2000);
+        String encodedPassword = slowerNodeEncoder.encode("testPassword");
+        slowerNodeEncoder.destroy();
+
+        assertTrue(encoder.matches("testPassword", encodedPassword));
+        assertFalse(encoder.upgradeEncoding(encodedPassword));
+    }
+
+    @Test
+    void matchMalformedHash_false() {
+        assertFalse(encoder.matches("testPassword", "$pbkdf2-sha512$i=abc$salt$hash"));
+        assertTrue(encoder.upgradeEncoding("$pbkdf2-sha512$broken"));
+    }
+
+    @Test
+    void matchesAsync_hashedOffCallerThread() {
+        String encodedPassword = encoder.encode("testPassword");
+
+        StepVerifier.create(encoder.matchesAsync("testPassword", encodedPassword)
+                        .map(matches -> matches + ":" + Thread.currentThread().getName()))
+                .expectNextMatches(result -> result.startsWith("true:pbkdf2-hashing"))
+                .verifyComplete();
+    }
+
+    @Test
+    void matchesAsyncWithThreadBusyAndQueueFull_rejected() throws InterruptedException {
+        String encodedPassword = encoder.encode("testPassword");
+        Scheduler hashingScheduler = (Scheduler) ReflectionTestUtils.getField(encoder, "hashingScheduler");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hashingScheduler.schedule(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // takes the only queue slot
+            hashingScheduler.schedule(() -> { });
+
+            StepVerifier.create(encoder.matchesAsync("testPassword", encodedPassword))
+                    .expectError(ServiceUnavailableException.class)
+                    .verify();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private PBFDK2Encoder createEncoder(int iterations) {
+        PBFDK2Encoder pbfdk2Encoder = new PBFDK2Encoder();
+        ReflectionTestUtils.setField(pbfdk2Encoder, "secret", SECRET);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "iteration", 64);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "keyLength", 256);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "saltLength", 16);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "calibrationEnabled", false);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "minIterations", iterations);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "maxIterations", iterations);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "poolSize", 1);
+        ReflectionTestUtils.setField(pbfdk2Encoder, "queueCapacity", 1);
+        pbfdk2Encoder.init();
+        return pbfdk2Encoder;
+    }
+}
@@ -0,0 +1,65 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.entity.UserRole;
+import com.updmtProjects.webfluxsecurity.security.PrincipalStatus;
+import com.updmtProjects.webfluxsecurity.security.PrincipalStatusCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PrincipalStatusCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PrincipalStatusCache principalStatusCache = new PrincipalStatusCache(Duration.ofMinutes(1), 100, meterRegistry);
+
+    @Test
+    void getConcurrentlyForSameUser_loadedOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<PrincipalStatus> pendingLoad = Sinks.one();
+
+        Mono<PrincipalStatus> first = principalStatusCache.get(1L, id -> {
+            loads.incrementAndGet();
+            return pendingLoad.asMono();
+        });
+        Mono<PrincipalStatus> second = principalStatusCache.get(1L, id -> {
+            loads.incrementAndGet();
+            return Mono.just(status(1));
+        });
+        pendingLoad.tryEmitValue(status(0));
+
+        StepVerifier.create(first.zipWith(second))
+                .expectNextMatches(statuses -> statuses.getT1() == statuses.getT2())
+                .verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getAfterInvalidate_loadedAgain() {
+        principalStatusCache.get(1L, id -> Mono.just(status(0))).block();
+        principalStatusCache.invalidate(1L);
+
+        StepVerifier.create(principalStatusCache.get(1L, id -> Mono.just(status(1))))
+                .expectNextMatches(status -> status.getTokenVersion() == 1)
+                .verifyComplete();
+    }
+
+    @Test
+    void getHitAndMiss_publishedAsMetrics() {
+        principalStatusCache.get(1L, id -> Mono.just(status(0))).block();
+        principalStatusCache.get(1L, id -> Mono.just(status(0))).block();
+
+        assertEquals(0.5, meterRegistry.get("security.principal-cache.hit-ratio").gauge().value());
+        meterRegistry.get("security.principal-cache.load-latency").gauge();
+    }
+
+    private static PrincipalStatus status(int tokenVersion) {
+        return new PrincipalStatus(true, false, UserRole.USER, tokenVersion);
+    }
+}
@@ -0,0 +1,108 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.entity.RefreshToken;
+import com.updmtProjects.webfluxsecurity.exception.AuthException;
+import com.updmtProjects.webfluxsecurity.repository.RefreshTokenRepository;
+import com.updmtProjects.webfluxsecurity.security.RefreshTokenService;
+import com.updmtProjects.webfluxsecurity.security.TokenDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RefreshTokenServiceTest {
+
+    private RefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenService refreshTokenService;
+    private String issuedToken;
+
+    @BeforeEach
+    void beforeEach() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshExpirationInSeconds", 3600L);
+    }
+
+    @Test
+    void consumeIssuedTokenTwice_secondUseRevokesAllTokensOfUser() {
+        RefreshToken stored = issueAndCapture();
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Mono.just(stored));
+        // the conditional update only matches while the token is not revoked yet
+        when(refreshTokenRepository.revokeById(10L)).thenReturn(Mono.just(1), Mono.just(0));
+        when(refreshTokenRepository.revokeAllByUserId(1L)).thenReturn(Mono.just(3));
+
+        StepVerifier.create(refreshTokenService.consume(issuedToken))
+                .expectNext(1L)
+                .verifyComplete();
+        verify(refreshTokenRepository, never()).revokeAllByUserId(anyLong());
+
+        StepVerifier.create(refreshTokenService.consume(issuedToken))
+                .expectErrorMatches(e -> e instanceof AuthException
+                        && "REFRESH_TOKEN_REUSED".equals(((AuthException) e).getErrorCode()))
+                .verify();
+        verify(refreshTokenRepository).revokeAllByUserId(1L);
+    }
+
+    @Test
+    void consumeExpiredToken_throwException() {
+        RefreshToken stored = issueAndCapture();
+        RefreshToken expired = stored.toBuilder().expiresAt(LocalDateTime.now().minusSeconds(1)).build();
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Mono.just(expired));
+
+        StepVerifier.create(refreshTokenService.consume(issuedToken))
+                .expectErrorMatches(e -> e instanceof AuthException
+                        && "REFRESH_TOKEN_EXPIRED".equals(((AuthException) e).getErrorCode()))
+                .verify();
+        verify(refreshTokenRepository, never()).revokeById(anyLong());
+    }
+
+    @Test
+    void consumeUnknownToken_throwException() {
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(refreshTokenService.consume("unknownToken"))
+                .expectErrorMatches(e -> e instanceof AuthException
+                        && "INVALID_REFRESH_TOKEN".equals(((AuthException) e).getErrorCode()))
+                .verify();
+    }
+
+    @Test
+    void consumeAfterRevoke_treatedAsReuse() {
+        RefreshToken stored = issueAndCapture();
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Mono.just(stored));
+        when(refreshTokenRepository.revokeById(10L)).thenReturn(Mono.just(1), Mono.just(0));
+        when(refreshTokenRepository.revokeAllByUserId(1L)).thenReturn(Mono.just(0));
+
+        StepVerifier.create(refreshTokenService.revoke(issuedToken))
+                .verifyComplete();
+        StepVerifier.create(refreshTokenService.consume(issuedToken))
+                .expectError(AuthException.class)
+                .verify();
+    }
+
+    private RefreshToken issueAndCapture() {
+        when(refreshTokenRepository.save(any(RefreshToken.class)))
+                .thenAnswer(invocation -> Mono.just(((RefreshToken) invocation.getArgument(0)).toBuilder().id(10L).build()));
+
+        TokenDetails tokenDetails = refreshTokenService.issue(1L).block();
+        issuedToken = tokenDetails.getRefreshToken();
+
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        // only the hash of the token is stored
+        assertNotEquals(issuedToken, captor.getValue().getTokenHash());
+        return captor.getValue().toBuilder().id(10L).build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.security.SlidingWindowRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlidingWindowRateLimiterTest {
+
+    @Test
+    void tryAcquireOverLimit_rejected() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(1024, Duration.ofMinutes(1), 3);
+
+        assertTrue(limiter.tryAcquire("testUser"));
+        assertTrue(limiter.tryAcquire("testUser"));
+        assertTrue(limiter.tryAcquire("testUser"));
+        assertFalse(limiter.tryAcquire("testUser"));
+        assertTrue(limiter.tryAcquire("anotherUser"));
+    }
+
+    @Test
+    void tryAcquireAfterFloodOfDistinctKeys_unrelatedKeyAccepted() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(1024, Duration.ofMinutes(1), 3);
+
+        // far more distinct keys than the limiter holds, each of them up to the limit
+        for (int i = 0; i < 100_000; i++) {
+            String key = "stuffedUser" + i;
+            for (int attempt = 0; attempt < 3; attempt++) {
+                limiter.tryAcquire(key);
+            }
+        }
+
+        assertTrue(limiter.tryAcquire("testUser"));
+        assertTrue(limiter.tryAcquire("testUser"));
+        assertTrue(limiter.tryAcquire("testUser"));
+    }
+}
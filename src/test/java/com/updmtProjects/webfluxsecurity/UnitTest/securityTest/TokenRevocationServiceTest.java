@@ -0,0 +1,112 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.entity.RevokedToken;
+import com.updmtProjects.webfluxsecurity.repository.RevokedTokenRepository;
+import com.updmtProjects.webfluxsecurity.security.TokenRevocationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TokenRevocationServiceTest {
+
+    private RevokedTokenRepository revokedTokenRepository;
+    private R2dbcEntityTemplate r2dbcEntityTemplate;
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void beforeEach() {
+        revokedTokenRepository = mock(RevokedTokenRepository.class);
+        r2dbcEntityTemplate = mock(R2dbcEntityTemplate.class);
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, r2dbcEntityTemplate,
+                1000, 0.001, Duration.ofSeconds(30), Duration.ofHours(1));
+    }
+
+    @Test
+    void isRevokedAfterRevoke_true() {
+        when(r2dbcEntityTemplate.insert(any(RevokedToken.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(revokedTokenRepository.existsById("revokedJti")).thenReturn(Mono.just(true));
+
+        StepVerifier.create(tokenRevocationService.revoke("revokedJti", new Date(System.currentTimeMillis() + 60_000L)))
+                .verifyComplete();
+
+        assertTrue(tokenRevocationService.mightBeRevoked("revokedJti"));
+        StepVerifier.create(tokenRevocationService.isRevoked("revokedJti"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void isRevokedForTokenNeverRevoked_falseWithoutDatabaseLookup() {
+        assertFalse(tokenRevocationService.mightBeRevoked("activeJti"));
+        StepVerifier.create(tokenRevocationService.isRevoked("activeJti"))
+                .expectNext(false)
+                .verifyComplete();
+
+        verify(revokedTokenRepository, never()).existsById(any(String.class));
+    }
+
+    @Test
+    void revokeFailedToStore_notMarkedAsRevoked() {
+        when(r2dbcEntityTemplate.insert(any(RevokedToken.class))).thenReturn(Mono.error(new RuntimeException("Database is down")));
+
+        StepVerifier.create(tokenRevocationService.revoke("revokedJti", new Date(System.currentTimeMillis() + 60_000L)))
+                .expectError(RuntimeException.class)
+                .verify();
+
+        assertFalse(tokenRevocationService.mightBeRevoked("revokedJti"));
+    }
+
+    @Test
+    void revokeAlreadyRevokedToken_completes() {
+        when(r2dbcEntityTemplate.insert(any(RevokedToken.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("Duplicate entry 'revokedJti'")));
+
+        StepVerifier.create(tokenRevocationService.revoke("revokedJti", new Date(System.currentTimeMillis() + 60_000L)))
+                .verifyComplete();
+
+        assertTrue(tokenRevocationService.mightBeRevoked("revokedJti"));
+    }
+
+    @Test
+    void revokeDuringRebuild_keptAfterFilterSwap() throws InterruptedException {
+        Sinks.Many<RevokedToken> storedTokens = Sinks.many().unicast().onBackpressureBuffer();
+        CountDownLatch rebuildStarted = new CountDownLatch(1);
+        when(revokedTokenRepository.deleteExpiredBefore(any())).thenReturn(Mono.just(0));
+        when(revokedTokenRepository.findByExpiresAtAfter(any()))
+                .thenReturn(storedTokens.asFlux().doOnSubscribe(subscription -> rebuildStarted.countDown()));
+        when(r2dbcEntityTemplate.insert(any(RevokedToken.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        tokenRevocationService.startSync();
+        try {
+            assertTrue(rebuildStarted.await(5, TimeUnit.SECONDS));
+            StepVerifier.create(tokenRevocationService.revoke("revokedJti", new Date(System.currentTimeMillis() + 60_000L)))
+                    .verifyComplete();
+            storedTokens.tryEmitNext(RevokedToken.builder().jti("storedJti").build());
+            storedTokens.tryEmitComplete();
+        } finally {
+            tokenRevocationService.stopSync();
+        }
+
+        assertTrue(tokenRevocationService.mightBeRevoked("storedJti"));
+        assertTrue(tokenRevocationService.mightBeRevoked("revokedJti"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.updmtProjects.webfluxsecurity.UnitTest.securityTest;
+
+import com.updmtProjects.webfluxsecurity.security.TokenVersionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TokenVersionRegistryTest {
+
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @BeforeEach
+    void beforeEach() {
+        tokenVersionRegistry = new TokenVersionRegistry(mock(DatabaseClient.class), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void currentStateBeforeFirstSync_unknown() {
+        assertNull(tokenVersionRegistry.currentState(1L));
+    }
+
+    @Test
+    void currentStateOfUnchangedUserAfterLoad_initialStateWithoutEntry() {
+        ReflectionTestUtils.setField(tokenVersionRegistry, "loaded", true);
+
+        assertEquals(new TokenVersionRegistry.TokenState(0, true), tokenVersionRegistry.currentState(1L));
+        assertTrue(states().isEmpty());
+    }
+
+    @Test
+    void updateDisabledThenEnabledAgain_entryDropped() {
+        ReflectionTestUtils.setField(tokenVersionRegistry, "loaded", true);
+
+        tokenVersionRegistry.update(1L, 0, false);
+        assertEquals(new TokenVersionRegistry.TokenState(0, false), tokenVersionRegistry.currentState(1L));
+
+        tokenVersionRegistry.update(1L, 0, true);
+        assertEquals(new TokenVersionRegistry.TokenState(0, true), tokenVersionRegistry.currentState(1L));
+        assertTrue(states().isEmpty());
+    }
+
+    @Test
+    void updateWithOlderVersion_ignored() {
+        tokenVersionRegistry.update(1L, 2, true);
+        tokenVersionRegistry.update(1L, 1, false);
+
+        assertEquals(new TokenVersionRegistry.TokenState(2, true), tokenVersionRegistry.currentState(1L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, TokenVersionRegistry.TokenState> states() {
+        return (Map<Long, TokenVersionRegistry.TokenState>) ReflectionTestUtils.getField(tokenVersionRegistry, "states");
+    }
+}
@@ -5,13 +5,15 @@ import com.updmtProjects.webfluxsecurity.entity.User;
 import com.updmtProjects.webfluxsecurity.entity.UserRole;
 import com.updmtProjects.webfluxsecurity.exception.CustomNotFoundException;
 import com.updmtProjects.webfluxsecurity.repository.UserRepository;
+import com.updmtProjects.webfluxsecurity.security.PrincipalStatusCache;
+import com.updmtProjects.webfluxsecurity.security.ReactivePasswordEncoder;
+import com.updmtProjects.webfluxsecurity.security.TokenVersionRegistry;
 import com.updmtProjects.webfluxsecurity.service.UserService.UserServiceImpl;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -20,6 +22,7 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,7 +35,13 @@ public class UserServiceImplTest {
     private UserRepository userRepository;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private ReactivePasswordEncoder passwordEncoder;
+
+    @Mock
+    private PrincipalStatusCache principalStatusCache;
+
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
 
     @Test
     void createUserTest_ok() {
@@ -53,7 +62,7 @@ public class UserServiceImplTest {
         savedUser.setCreatedAt(LocalDateTime.now());
         savedUser.setUpdatedAt(LocalDateTime.now());
 
-        when(passwordEncoder.encode(userToSave.getPassword())).thenReturn("encodedPassword");
+        when(passwordEncoder.encodeAsync(userToSave.getPassword())).thenReturn(Mono.just("encodedPassword"));
         when(userRepository.save(any(User.class))).thenReturn(Mono.just(savedUser));
 
         Mono<User> resultMono = userService.createUser(userToSave);
@@ -75,7 +84,7 @@ public class UserServiceImplTest {
         user.setPassword("testPass");
         user.setRole(UserRole.USER);
 
-        when(passwordEncoder.encode(any(String.class))).thenReturn("encodedPassword");
+        when(passwordEncoder.encodeAsync(any(String.class))).thenReturn(Mono.just("encodedPassword"));
 
         when(userRepository.save(any(User.class))).thenReturn(Mono.error( new RuntimeException("Database error")));
 
@@ -168,6 +177,9 @@ public class UserServiceImplTest {
                         !eliminatedUser.getUpdatedAt().equals(user.getUpdatedAt()) &&
                         eliminatedUser.isDeleted() == Boolean.TRUE)
                 .verifyComplete();
+
+        verify(principalStatusCache).invalidate(1L);
+        verify(tokenVersionRegistry).update(1L, deletedUser.getTokenVersion(), false);
     }
 
     @Test